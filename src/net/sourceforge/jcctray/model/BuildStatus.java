@@ -0,0 +1,89 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The status of the last build of a {@link DashBoardProject}, as reported
+ * by the server. There is a single instance of each status defined here, so
+ * they can be compared by identity. Other statuses are not shared: every
+ * project gets an instance of its own, that keeps the name sent by the server
+ * and is not {@link #isDefined() defined}. Compare them with
+ * {@link #equals(Object)}.
+ */
+public final class BuildStatus {
+
+	private static final Map			known					= new HashMap();
+
+	public static final BuildStatus		SUCCESS					= define("Success");
+	public static final BuildStatus		FAILURE					= define("Failure");
+	public static final BuildStatus		EXCEPTION				= define("Exception");
+	public static final BuildStatus		UNKNOWN					= define("Unknown");
+
+	private final String				name;
+	private final boolean				defined;
+
+	private BuildStatus(String name, boolean defined) {
+		this.name = name;
+		this.defined = defined;
+	}
+
+	private static BuildStatus define(String name) {
+		BuildStatus status = new BuildStatus(name, true);
+		known.put(name, status);
+		return status;
+	}
+
+	/**
+	 * @return the status with the given name, or <code>null</code> if the
+	 *         name is <code>null</code>.
+	 */
+	public static BuildStatus valueOf(String name) {
+		if (name == null)
+			return null;
+		BuildStatus status = (BuildStatus) known.get(name);
+		return status != null ? status : new BuildStatus(name, false);
+	}
+
+	/**
+	 * @return <code>true</code> if this status is one of the constants
+	 *         defined here.
+	 */
+	public boolean isDefined() {
+		return defined;
+	}
+
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof BuildStatus))
+			return false;
+		return name.equals(((BuildStatus) obj).name);
+	}
+
+	public int hashCode() {
+		return name.hashCode();
+	}
+
+	/**
+	 * @return the name of the status, as reported by the server.
+	 */
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.Random;
+
+/**
+ * Decides when a failing {@link Host} is taken offline, and how long to wait
+ * before probing it again. The circuit of a host is opened after
+ * {@link ISettingsConstants#CIRCUIT_FAILURE_THRESHOLD} consecutive failures.
+ * The wait starts at {@link ISettingsConstants#CIRCUIT_BACKOFF_INITIAL}
+ * seconds and doubles with every failed probe, up to
+ * {@link ISettingsConstants#CIRCUIT_BACKOFF_MAX} seconds. A random jitter of
+ * up to 25% is applied so that hosts that went down together are not all
+ * probed at the same moment.
+ * 
+ * @see HostHealth
+ */
+public class CircuitBreaker {
+
+	private static final double		JITTER	= 0.25;
+
+	private final IJCCTraySettings	traySettings;
+	private final Random			random;
+
+	public CircuitBreaker(IJCCTraySettings traySettings) {
+		this(traySettings, new Random());
+	}
+
+	public CircuitBreaker(IJCCTraySettings traySettings, Random random) {
+		this.traySettings = traySettings;
+		this.random = random;
+	}
+
+	public void recordSuccess(Host host, long now) {
+		host.getHealth().recordSuccess(now);
+	}
+
+	/**
+	 * Records a failed poll of the given host.
+	 * 
+	 * @return <code>true</code> if this failure took the host offline.
+	 */
+	public boolean recordFailure(Host host, Exception error, long now) {
+		HostHealth health = host.getHealth();
+		synchronized (health) {
+			int failures = health.getConsecutiveFailures() + 1;
+			int threshold = Math.max(1, traySettings.getInt(ISettingsConstants.CIRCUIT_FAILURE_THRESHOLD));
+			boolean wasOpen = health.getState() != HostHealth.CLOSED;
+			boolean open = wasOpen || failures >= threshold;
+			health.recordFailure(error, open, now + getBackoffMillis(failures - threshold));
+			return open && !wasOpen;
+		}
+	}
+
+	/**
+	 * Records a poll of the given host that did not finish before its
+	 * deadline. A slow host is not a failing one, so the circuit is left
+	 * alone, except for a probe of an open circuit: a late probe counts as a
+	 * failed one, and the circuit is opened again for longer.
+	 */
+	public void recordLate(Host host, long now) {
+		HostHealth health = host.getHealth();
+		synchronized (health) {
+			if (health.getState() == HostHealth.HALF_OPEN)
+				recordFailure(host, new Exception("The host did not answer in time"), now);
+			else
+				health.recordLate();
+		}
+	}
+
+	/**
+	 * @return the time to wait before the next probe, after the circuit has
+	 *         been opened <code>retries</code> times in a row.
+	 */
+	long getBackoffMillis(int retries) {
+		long initial = Math.max(1, traySettings.getInt(ISettingsConstants.CIRCUIT_BACKOFF_INITIAL)) * 1000L;
+		long max = Math.max(initial, traySettings.getInt(ISettingsConstants.CIRCUIT_BACKOFF_MAX) * 1000L);
+		long backoff = initial;
+		for (int i = 0; i < retries && backoff < max; i++)
+			backoff *= 2;
+		backoff = Math.min(backoff, max);
+		return backoff - (long) (backoff * JITTER * random.nextDouble());
+	}
+}
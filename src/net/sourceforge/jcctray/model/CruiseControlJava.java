@@ -17,11 +17,9 @@ package net.sourceforge.jcctray.model;
 
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Locale;
 import java.util.TimeZone;
 
+import net.sourceforge.jcctray.utils.DateEngine;
 import net.sourceforge.jcctray.utils.StringUtils;
 
 /**
@@ -32,10 +30,6 @@ import net.sourceforge.jcctray.utils.StringUtils;
  */
 public class CruiseControlJava extends HTTPCruise implements ICruise {
 
-	private static final Locale	LOCALE_US	= Locale.US;
-	private static final SimpleDateFormat	DATE_FORMATTER	= new SimpleDateFormat("h:mm:ss a, dd MMM", LOCALE_US);
-	private static final SimpleDateFormat	DATE_PARSER		= new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", LOCALE_US);
-
 	protected String forceBuildURL(DashBoardProject project) {
 		String hostName = project.getHost().getHostName();
 		URL url = null;
@@ -56,11 +50,10 @@ public class CruiseControlJava extends HTTPCruise implements ICruise {
 	public String formatDate(String date, TimeZone timeZone) {
 		if (StringUtils.isEmptyOrNull(date))
 			return null;
-		try {
-			return DATE_FORMATTER.format(DATE_PARSER.parse(date));
-		} catch (ParseException e) {
-			getLog().error("Could not parse date: " + date);
-		}
+		String formattedDate = getDateEngine().format(date, TimeZone.getDefault());
+		if (formattedDate != null)
+			return formattedDate;
+		getLog().error("Could not parse date: " + date);
 		return date;
 	}
 
@@ -68,6 +61,10 @@ public class CruiseControlJava extends HTTPCruise implements ICruise {
 		return "CruiseControl";
 	}
 
+	protected DateEngine getDateEngine() {
+		return DateEngine.LOCAL;
+	}
+
 	protected String getSuccessMessage(DashBoardProject project) {
 		return "Invocation successful";
 	}
@@ -15,11 +15,10 @@
  ******************************************************************************/
 package net.sourceforge.jcctray.model;
 
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Locale;
 import java.util.TimeZone;
 
+import net.sourceforge.jcctray.utils.StringUtils;
+
 import org.apache.commons.httpclient.DefaultHttpMethodRetryHandler;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
@@ -33,9 +32,6 @@ import org.apache.commons.httpclient.params.HttpMethodParams;
  */
 public class CruiseControlRuby extends HTTPCruise implements ICruise {
 
-	private static final Locale				LOCALE_US	= Locale.US;
-	private static final SimpleDateFormat	DATE_PARSER	= new SimpleDateFormat("yyyy-MM-dd'T'HHmmssZ", LOCALE_US);
-
 	protected String forceBuildURL(DashBoardProject project) {
 		return project.getHost().getHostName().replaceAll("/*$", "") + "/projects/build/" + project.getName();
 	}
@@ -56,22 +52,14 @@ public class CruiseControlRuby extends HTTPCruise implements ICruise {
 	}
 
 	public String formatDate(String date, TimeZone timeZone) {
-		try {
-			String theDate = date.replaceAll("\\.\\d+", "").replaceAll(":", "");
-			return getDateFormatter(timeZone).format(DATE_PARSER.parse(theDate));
-		} catch (Exception e) {
+		String formattedDate = getDateEngine().format(date, timeZone);
+		if (formattedDate != null)
+			return formattedDate;
+		if (!StringUtils.isEmptyOrNull(date))
 			getLog().error("Could not parse date: " + date);
-		}
 		return date;
 	}
 
-	private SimpleDateFormat getDateFormatter(TimeZone timeZone) {
-		SimpleDateFormat dateFormatter = new SimpleDateFormat("h:mm:ss a, dd MMM", LOCALE_US);
-		Calendar calendar = Calendar.getInstance();
-		calendar.setTimeZone(timeZone);
-		dateFormatter.setCalendar(calendar);
-		return dateFormatter;
-	}
 
 	public String getName() {
 		return "CruiseControl.rb";
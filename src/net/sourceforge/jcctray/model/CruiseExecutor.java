@@ -0,0 +1,126 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs requests to {@link ICruise}s that the caller does not wait for, like
+ * forcing a build, in the background on a small shared pool of daemon
+ * threads. Requests beyond the size of the pool are queued. With virtual
+ * threads, see {@link ExecutionMode}, every request runs at once on its own
+ * thread.
+ * <p>
+ * The transport underneath is blocking, so every request in flight holds
+ * one thread of the pool until the server answers.
+ */
+public class CruiseExecutor {
+
+	private static final int			DEFAULT_THREADS		= 4;
+	private static final String			THREAD_NAME_PREFIX	= "CruiseWorker-";
+
+	private static CruiseExecutor		instance;
+
+	private ExecutorService				executor;
+	private final int					threads;
+	private ExecutionMode				executionMode		= ExecutionMode.PLATFORM;
+
+	CruiseExecutor(int threads) {
+		this.threads = threads;
+		this.executor = executionMode.newExecutor(THREAD_NAME_PREFIX, threads);
+	}
+
+	public static synchronized CruiseExecutor getInstance() {
+		if (instance == null)
+			instance = new CruiseExecutor(DEFAULT_THREADS);
+		return instance;
+	}
+
+	/**
+	 * Changes the threads new requests run on. In the
+	 * {@link ExecutionMode#VIRTUAL} mode every request runs on a new virtual
+	 * thread. Falls back to {@link ExecutionMode#PLATFORM} if virtual threads
+	 * are not available. Requests that were already submitted are not
+	 * affected.
+	 */
+	public synchronized void setExecutionMode(ExecutionMode executionMode) {
+		executionMode = executionMode.availableMode();
+		if (executionMode == this.executionMode)
+			return;
+		this.executionMode = executionMode;
+		executor.shutdown();
+		executor = executionMode.newExecutor(THREAD_NAME_PREFIX, threads);
+	}
+
+	public synchronized ExecutionMode getExecutionMode() {
+		return executionMode;
+	}
+
+	/**
+	 * Runs the given task in the background, for requests that report their
+	 * own outcome.
+	 */
+	public synchronized void execute(Runnable task) {
+		executor.execute(task);
+	}
+
+	/**
+	 * Fetches the projects of a host in the background. An
+	 * {@link IFilteringCruise} only returns the given projects, other cruises
+	 * return all their projects.
+	 * 
+	 * @return a {@link Future} of the {@link DashBoardProjects}. Its
+	 *         {@link Future#get()} throws an
+	 *         {@link java.util.concurrent.ExecutionException} with the
+	 *         exception of the fetch, if it failed.
+	 */
+	public synchronized Future getProjects(final ICruise cruise, final Host host, final Set projectNames) {
+		return executor.submit(new Callable() {
+			public Object call() throws Exception {
+				if (cruise instanceof IFilteringCruise)
+					return ((IFilteringCruise) cruise).getProjects(host, projectNames);
+				return cruise.getProjects(host);
+			}
+		});
+	}
+
+	/**
+	 * Forces a build in the background.
+	 * 
+	 * @return a {@link Future} of <code>null</code> once
+	 *         {@link ICruise#forceBuild(DashBoardProject)} returns, that
+	 *         fails like {@link #getProjects(ICruise, Host, Set)}.
+	 */
+	public synchronized Future forceBuild(final ICruise cruise, final DashBoardProject project) {
+		return executor.submit(new Callable() {
+			public Object call() throws Exception {
+				cruise.forceBuild(project);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Stops the threads, when JCCTray exits. Requests that are still running
+	 * are interrupted.
+	 */
+	public synchronized void shutdown() {
+		executor.shutdownNow();
+	}
+}
@@ -15,23 +15,34 @@
  ******************************************************************************/
 package net.sourceforge.jcctray.model;
 
+import net.sourceforge.jcctray.utils.DateEngine;
+
 /**
  * Represents a project that is part of a CruiseControl instance.
+ * <p>
+ * The build times are parsed once, when they are set or the project moves
+ * to another host, with the {@link DateEngine} of the cruise of the host.
+ * The timestamps reported by the server are kept as well, for cruises whose
+ * timestamps cannot be parsed.
  * 
  * @author Ketan Padegaonkar
  */
 public class DashBoardProject {
 
-	private String	name;
-	private String	activity;
-	private String	lastBuildStatus;
-	private String	lastBuildLabel;
-	private String	lastBuildTime;
-	private String	nextBuildTime;
-	private String	webUrl;
-	private String	category;
-	private boolean	enabled;
-	private Host	host;
+	private String			name;
+	private ProjectActivity	activity;
+	private BuildStatus		lastBuildStatus;
+	private String			lastBuildLabel;
+	private long			lastBuildTime;
+	private long			nextBuildTime;
+	private String			lastBuildTimestamp;
+	private String			nextBuildTimestamp;
+	private String			webUrl;
+	private String			category;
+	private boolean			enabled;
+	private Host			host;
+	private boolean			frozen;
+	private ProjectRow		row;
 
 	public DashBoardProject() {
 		this("");
@@ -54,14 +65,15 @@ public class DashBoardProject {
 	public DashBoardProject(String name, String activity, String lastBuildStatus, String lastBuildLabel,
 			String lastBuildTime, String nextBuildTime, String webUrl, String category, Host host) {
 		this.name = name;
-		this.activity = activity;
-		this.lastBuildStatus = lastBuildStatus;
+		this.activity = ProjectActivity.valueOf(activity);
+		this.lastBuildStatus = BuildStatus.valueOf(lastBuildStatus);
 		this.lastBuildLabel = lastBuildLabel;
-		this.lastBuildTime = lastBuildTime;
-		this.nextBuildTime = nextBuildTime;
+		this.lastBuildTimestamp = lastBuildTime;
+		this.nextBuildTimestamp = nextBuildTime;
 		this.webUrl = webUrl;
 		this.category = category;
 		this.host = host;
+		parseBuildTimes();
 	}
 
 	public String getCategory() {
@@ -69,6 +81,7 @@ public class DashBoardProject {
 	}
 
 	public void setCategory(String category) {
+		checkNotFrozen();
 		this.category = category;
 	}
 
@@ -77,23 +90,50 @@ public class DashBoardProject {
 	}
 
 	public void setName(String name) {
+		checkNotFrozen();
 		this.name = name;
 	}
 
+	/**
+	 * @return the name of the activity.
+	 * @see #getProjectActivity()
+	 */
 	public String getActivity() {
-		return activity;
+		return activity == null ? null : activity.toString();
 	}
 
 	public void setActivity(String activity) {
-		this.activity = activity;
+		checkNotFrozen();
+		this.activity = ProjectActivity.valueOf(activity);
+	}
+
+	public ProjectActivity getProjectActivity() {
+		return activity;
 	}
 
+	/**
+	 * @return <code>true</code> if the project is building or checking for
+	 *         modifications.
+	 */
+	public boolean isActive() {
+		return activity != null && activity.isActive();
+	}
+
+	/**
+	 * @return the name of the status of the last build.
+	 * @see #getBuildStatus()
+	 */
 	public String getLastBuildStatus() {
-		return lastBuildStatus;
+		return lastBuildStatus == null ? null : lastBuildStatus.toString();
 	}
 
 	public void setLastBuildStatus(String lastBuildStatus) {
-		this.lastBuildStatus = lastBuildStatus;
+		checkNotFrozen();
+		this.lastBuildStatus = BuildStatus.valueOf(lastBuildStatus);
+	}
+
+	public BuildStatus getBuildStatus() {
+		return lastBuildStatus;
 	}
 
 	public String getLastBuildLabel() {
@@ -101,23 +141,52 @@ public class DashBoardProject {
 	}
 
 	public void setLastBuildLabel(String lastBuildLabel) {
+		checkNotFrozen();
 		this.lastBuildLabel = lastBuildLabel;
 	}
 
+	/**
+	 * @return the time of the last build as reported by the server.
+	 * @see #getLastBuildMillis()
+	 */
 	public String getLastBuildTime() {
-		return lastBuildTime;
+		return lastBuildTimestamp;
 	}
 
 	public void setLastBuildTime(String lastBuildTime) {
-		this.lastBuildTime = lastBuildTime;
+		checkNotFrozen();
+		this.lastBuildTimestamp = lastBuildTime;
+		this.lastBuildTime = parse(lastBuildTime, host);
 	}
 
+	/**
+	 * @return the time of the last build in milliseconds since the epoch, or
+	 *         {@link DateEngine#UNPARSEABLE}.
+	 */
+	public long getLastBuildMillis() {
+		return lastBuildTime;
+	}
+
+	/**
+	 * @return the time of the next build check as reported by the server.
+	 * @see #getNextBuildMillis()
+	 */
 	public String getNextBuildTime() {
-		return nextBuildTime;
+		return nextBuildTimestamp;
 	}
 
 	public void setNextBuildTime(String nextBuildTime) {
-		this.nextBuildTime = nextBuildTime;
+		checkNotFrozen();
+		this.nextBuildTimestamp = nextBuildTime;
+		this.nextBuildTime = parse(nextBuildTime, host);
+	}
+
+	/**
+	 * @return the time of the next build check in milliseconds since the
+	 *         epoch, or {@link DateEngine#UNPARSEABLE}.
+	 */
+	public long getNextBuildMillis() {
+		return nextBuildTime;
 	}
 
 	public String getWebUrl() {
@@ -125,6 +194,7 @@ public class DashBoardProject {
 	}
 
 	public void setWebUrl(String webUrl) {
+		checkNotFrozen();
 		this.webUrl = webUrl;
 	}
 
@@ -166,6 +236,7 @@ public class DashBoardProject {
 	}
 
 	public void setEnabled(boolean enabled) {
+		checkNotFrozen();
 		this.enabled = enabled;
 	}
 
@@ -174,10 +245,114 @@ public class DashBoardProject {
 	}
 
 	public void setHost(Host host) {
+		checkNotFrozen();
+		boolean sameEngine = dateEngine(host) == dateEngine(this.host);
 		this.host = host;
+		if (!sameEngine)
+			parseBuildTimes();
 	}
 
 	public void forceBuild() throws Exception {
 		getHost().forceBuild(this);
 	}
+
+	/**
+	 * @return a copy of this project that cannot be changed, or this project
+	 *         if it cannot be changed already.
+	 */
+	public DashBoardProject snapshot() {
+		if (frozen)
+			return this;
+		DashBoardProject snapshot = copy(host);
+		snapshot.frozen = true;
+		snapshot.row = ProjectRow.of(snapshot);
+		return snapshot;
+	}
+
+	/**
+	 * @return a copy of this project on the given host, for hosts that share
+	 *         a status report.
+	 */
+	public DashBoardProject copy(Host host) {
+		DashBoardProject copy = new DashBoardProject(name, null, null, lastBuildLabel, null, null, webUrl,
+				category, this.host);
+		copy.activity = activity;
+		copy.lastBuildStatus = lastBuildStatus;
+		copy.lastBuildTime = lastBuildTime;
+		copy.nextBuildTime = nextBuildTime;
+		copy.lastBuildTimestamp = lastBuildTimestamp;
+		copy.nextBuildTimestamp = nextBuildTimestamp;
+		copy.enabled = enabled;
+		copy.setHost(host);
+		return copy;
+	}
+
+	/**
+	 * @return how this project is shown in the project table. The row of a
+	 *         snapshot is created along with the snapshot, other projects get
+	 *         a new row every time.
+	 */
+	public ProjectRow getRow() {
+		if (row != null)
+			return row;
+		return ProjectRow.of(this);
+	}
+
+	/**
+	 * @return whether this project is a snapshot, whose setters throw an
+	 *         {@link UnsupportedOperationException}.
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	/**
+	 * @return whether the given project has the same status as this one,
+	 *         that is, all their attributes are the same.
+	 */
+	public boolean hasSameStatus(DashBoardProject other) {
+		return equals(other) && equal(activity, other.activity) && equal(lastBuildStatus, other.lastBuildStatus)
+				&& equal(lastBuildLabel, other.lastBuildLabel)
+				&& sameTime(lastBuildTime, lastBuildTimestamp, other.lastBuildTime, other.lastBuildTimestamp)
+				&& sameTime(nextBuildTime, nextBuildTimestamp, other.nextBuildTime, other.nextBuildTimestamp)
+				&& equal(webUrl, other.webUrl) && equal(category, other.category) && enabled == other.enabled;
+	}
+
+	/**
+	 * Times that could be parsed are compared as instants, the others by
+	 * their timestamps.
+	 */
+	private static boolean sameTime(long time, String timestamp, long otherTime, String otherTimestamp) {
+		if (time != otherTime)
+			return false;
+		return time != DateEngine.UNPARSEABLE || equal(timestamp, otherTimestamp);
+	}
+
+	private void parseBuildTimes() {
+		lastBuildTime = parse(lastBuildTimestamp, host);
+		nextBuildTime = parse(nextBuildTimestamp, host);
+	}
+
+	private static long parse(String timestamp, Host host) {
+		DateEngine engine = dateEngine(host);
+		return engine == null ? DateEngine.UNPARSEABLE : engine.parse(timestamp);
+	}
+
+	/**
+	 * @return the engine of the cruise of the given host, or
+	 *         <code>null</code> if the cruise is not an {@link HTTPCruise}.
+	 */
+	private static DateEngine dateEngine(Host host) {
+		ICruise cruise = host == null ? null : host.getCruise();
+		return cruise instanceof HTTPCruise ? ((HTTPCruise) cruise).getDateEngine() : null;
+	}
+
+	private static boolean equal(Object value, Object otherValue) {
+		return value == null ? otherValue == null : value.equals(otherValue);
+	}
+
+	private void checkNotFrozen() {
+		if (frozen)
+			throw new UnsupportedOperationException("The project " + name + " is a snapshot and cannot be changed");
+	}
 }
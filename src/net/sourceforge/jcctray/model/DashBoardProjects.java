@@ -15,38 +15,71 @@
  ******************************************************************************/
 package net.sourceforge.jcctray.model;
 
-import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Represents a collection of {@link DashBoardProject}s.
+ * <p>
+ * Projects are kept in the order they were added, and are indexed by their
+ * name and host so that they can be added, found and removed in constant
+ * time. A project must not change its name or host while it is in the
+ * collection, use {@link #setHost(Host)} to move all the projects to a
+ * host.
  * 
  * @author Ketan Padegaonkar
  */
 public class DashBoardProjects implements Iterable {
 
-	private List	projectList	= new ArrayList();
+	private Map					projects	= new LinkedHashMap();
+	private DashBoardProject[]	array;
+	private boolean				frozen;
 
 	public void add(DashBoardProject project) {
-		projectList.remove(project); // we're not a set - want to maintain
-										// order and be called a set
-		projectList.add(project);
+		checkNotFrozen();
+		projects.remove(project); // we're not a set - want to maintain
+									// order and be called a set
+		projects.put(project, project);
+		array = null;
+	}
+
+	/**
+	 * Replaces the project with the same name and host as the given one,
+	 * keeping its position, or adds the given project if there is none.
+	 */
+	public void replace(DashBoardProject project) {
+		checkNotFrozen();
+		projects.put(project, project);
+		array = null;
+	}
+
+	public void remove(DashBoardProject project) {
+		checkNotFrozen();
+		if (projects.remove(project) != null)
+			array = null;
 	}
 
 	public int count() {
-		return projectList.size();
+		return projects.size();
 	}
 
 	public DashBoardProject getProject(int index) {
-		return (DashBoardProject) projectList.get(index);
+		return array()[index];
 	}
 
 	public DashBoardProject[] toArray() {
-		DashBoardProject[] projects = new DashBoardProject[count()];
-		if (count() != 0)
-			this.projectList.toArray(projects);
-		return projects;
+		return array().clone();
+	}
+
+	/**
+	 * @return the projects in order, the array is kept until the projects
+	 *         change, so that they can be accessed by index in constant time.
+	 */
+	private DashBoardProject[] array() {
+		if (array == null)
+			array = (DashBoardProject[]) projects.values().toArray(new DashBoardProject[projects.size()]);
+		return array;
 	}
 
 	public void add(DashBoardProjects projects) {
@@ -56,12 +89,67 @@ public class DashBoardProjects implements Iterable {
 
 	}
 
+	/**
+	 * Sets the host of all the projects, and indexes them again.
+	 */
+	public void setHost(Host host) {
+		checkNotFrozen();
+		boolean changed = false;
+		for (Iterator iterator = projects.values().iterator(); iterator.hasNext();) {
+			DashBoardProject project = (DashBoardProject) iterator.next();
+			if (project.getHost() != host) {
+				project.setHost(host);
+				changed = true;
+			}
+		}
+		if (!changed)
+			return;
+		DashBoardProject[] projectList = array();
+		projects.clear();
+		for (int i = 0; i < projectList.length; i++)
+			add(projectList[i]);
+	}
+
+	/**
+	 * Prevents any further change to this collection.
+	 * 
+	 * @return this collection.
+	 */
+	public DashBoardProjects freeze() {
+		frozen = true;
+		return this;
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	private void checkNotFrozen() {
+		if (frozen)
+			throw new UnsupportedOperationException("The projects are a snapshot and cannot be changed");
+	}
+
 	public String toString() {
-		return "Projects - " + projectList;
+		return "Projects - " + projects.values();
 	}
 
 	public Iterator iterator() {
-		return projectList.iterator();
+		final Iterator iterator = projects.values().iterator();
+		return new Iterator() {
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			public Object next() {
+				return iterator.next();
+			}
+
+			public void remove() {
+				checkNotFrozen();
+				iterator.remove();
+				array = null;
+			}
+		};
 	}
 
 	/**
@@ -73,15 +161,7 @@ public class DashBoardProjects implements Iterable {
 	 * @return A project with the same name and host, or null.
 	 */
 	public DashBoardProject get(DashBoardProject newProject) {
-		Iterator it = projectList.iterator();
-		while (it.hasNext())
-		{
-			Object project = it.next();
-			if (project.equals(newProject)) {
-				return (DashBoardProject) project;
-			}
-		}
-		return null;
+		return (DashBoardProject) projects.get(newProject);
 	}
 
 }
@@ -15,21 +15,43 @@
  ******************************************************************************/
 package net.sourceforge.jcctray.model;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
 import java.io.Reader;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import net.sourceforge.jcctray.utils.CountingInputStream;
+
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.digester.Digester;
 import org.apache.commons.digester.ObjectCreateRule;
 import org.apache.commons.digester.SetNextRule;
 import org.apache.commons.digester.SetPropertiesRule;
 import org.apache.commons.httpclient.DefaultHttpMethodRetryHandler;
+import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpException;
+import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.params.HttpMethodParams;
+import org.apache.log4j.Logger;
 import org.xml.sax.SAXException;
 
 /**
@@ -41,31 +63,235 @@ import org.xml.sax.SAXException;
  */
 public class DashboardXmlParser {
 
+	/**
+	 * A buffer that a status report is read into while it is digested, and
+	 * that is reused for the next report read by the same thread.
+	 */
+	private static final class ReportBuffer extends ByteArrayOutputStream {
+		private ReportBuffer() {
+			super(8192);
+		}
+
+		/**
+		 * Replaces the content of the buffer with the rest of the stream,
+		 * reading straight into the buffer.
+		 */
+		private void readFrom(InputStream in) throws IOException {
+			reset();
+			while (true) {
+				if (count == buf.length) {
+					byte[] larger = new byte[buf.length * 2];
+					System.arraycopy(buf, 0, larger, 0, count);
+					buf = larger;
+				}
+				int read = in.read(buf, count, buf.length - count);
+				if (read == -1)
+					return;
+				count += read;
+			}
+		}
+
+		/**
+		 * @return a stream of the content of the buffer, that is not copied.
+		 */
+		private InputStream getInputStream() {
+			return new ByteArrayInputStream(buf, 0, count);
+		}
+
+		private int capacity() {
+			return buf.length;
+		}
+	}
+
+	/** Selects the streaming parser, this is the default. */
+	public static final String				STAX			= "stax";
+	/** Selects the original, digester based parser. */
+	public static final String				DIGESTER		= "digester";
+
+	private static final Logger				log				= Logger.getLogger(DashboardXmlParser.class);
+	private static final XMLInputFactory	inputFactory	= createInputFactory();
+	/** Buffers larger than this are not kept for the next report. */
+	private static final int				MAX_KEPT_BUFFER	= 1024 * 1024;
+	private static final ThreadLocal		reportBuffers	= new ThreadLocal();
+
 	public static DashBoardProjects getProjects(String url, HttpClient client) throws HttpException, IOException,
 			SAXException {
+		return getProjects(url, client, null);
+	}
+
+	/**
+	 * @param projectNames
+	 *            the names of the projects to read, or <code>null</code> to
+	 *            read all of them.
+	 */
+	public static DashBoardProjects getProjects(String url, HttpClient client, Set projectNames)
+			throws HttpException, IOException, SAXException {
+		return getProjects(url, client, projectNames, StatusReportCache.getInstance());
+	}
+
+	public static DashBoardProjects getProjects(String url, HttpClient client, Set projectNames,
+			StatusReportCache cache) throws HttpException, IOException, SAXException {
+		return getProjects(url, url, client, projectNames, cache);
+	}
+
+	/**
+	 * Fetches the projects from the given url. The request is made
+	 * conditional on the validators held by the cache, and when the server
+	 * answers <code>304 Not Modified</code> the cached projects are returned
+	 * as they are. So are they when the report is byte for byte the same as
+	 * the last one, which lets callers tell an unchanged report by the
+	 * identity of the projects returned.
+	 * 
+	 * @param cacheKey
+	 *            the key of the report in the cache, that must tell apart the
+	 *            clients the server may answer differently.
+	 */
+	public static DashBoardProjects getProjects(String url, String cacheKey, HttpClient client, Set projectNames,
+			StatusReportCache cache) throws HttpException, IOException, SAXException {
 		GetMethod method = new GetMethod(url);
 		method.getParams().setParameter(HttpMethodParams.RETRY_HANDLER, new DefaultHttpMethodRetryHandler(3, false));
+		method.setRequestHeader("Accept-Encoding", "gzip, deflate");
+		boolean conditional = cache.addValidators(cacheKey, projectNames, method);
 		try {
 			int statusCode = client.executeMethod(method);
-			if (statusCode != HttpStatus.SC_OK) {
+			if (statusCode == HttpStatus.SC_OK)
+				return readProjects(url, cacheKey, method, projectNames, cache);
+			if (statusCode != HttpStatus.SC_NOT_MODIFIED || !conditional) {
 				throw new RuntimeException(
 						("Could not connect to " + url + ". The server returned a " + statusCode + " status code"));
 			}
-			return getProjects(method.getResponseBodyAsStream());
+			DashBoardProjects projects = cache.getProjects(cacheKey, projectNames);
+			if (projects != null)
+				return projects;
 		} finally {
 			method.releaseConnection();
 		}
+		// the report did not change, but the cached copy of it is gone
+		cache.remove(cacheKey, projectNames);
+		return getProjects(url, cacheKey, client, projectNames, cache);
+	}
+
+	private static DashBoardProjects readProjects(String url, String cacheKey, HttpMethod method,
+			Set projectNames, StatusReportCache cache) throws IOException, SAXException {
+		InputStream responseBody = method.getResponseBodyAsStream();
+		CountingInputStream wire = new CountingInputStream(responseBody == null ? new ByteArrayInputStream(
+				new byte[0]) : responseBody);
+		CountingInputStream xml = new CountingInputStream(decode(wire, getHeader(method, "Content-Encoding")));
+		ReportBuffer body = getReportBuffer();
+		try {
+			MessageDigest digest = newDigest();
+			body.readFrom(new DigestInputStream(xml, digest));
+			String bodyDigest = new String(Hex.encodeHex(digest.digest()));
+			DashBoardProjects projects = cache.getProjects(cacheKey, bodyDigest, projectNames);
+			if (projects == null)
+				projects = getProjects(body.getInputStream(), projectNames);
+			else if (log.isDebugEnabled())
+				log.debug("Status report did not change: " + url);
+			cache.put(cacheKey, getHeader(method, "ETag"), getHeader(method, "Last-Modified"), bodyDigest, body,
+					projectNames, projects);
+			return projects;
+		} finally {
+			if (body.capacity() > MAX_KEPT_BUFFER)
+				reportBuffers.set(null);
+			TransferStatistics.getInstance().record(wire.getCount(), xml.getCount());
+			if (log.isDebugEnabled())
+				log.debug("Fetched " + url + ": " + wire.getCount() + " bytes received, " + xml.getCount()
+						+ " bytes of XML");
+		}
+	}
+
+	/**
+	 * Wraps the response body in a decompressing stream, according to the
+	 * <code>Content-Encoding</code> of the response. Servers are
+	 * inconsistent about <code>deflate</code>, so both zlib wrapped and raw
+	 * deflate data are accepted.
+	 */
+	static InputStream decode(InputStream in, String contentEncoding) throws IOException {
+		if (contentEncoding == null)
+			return in;
+		String encoding = contentEncoding.trim().toLowerCase();
+		if (encoding.equals("gzip") || encoding.equals("x-gzip"))
+			return new GZIPInputStream(in);
+		if (encoding.equals("deflate")) {
+			PushbackInputStream pushback = new PushbackInputStream(in, 2);
+			byte[] header = new byte[2];
+			int read = pushback.read(header);
+			if (read > 0)
+				pushback.unread(header, 0, read);
+			boolean zlib = read == 2 && (header[0] & 0x0f) == 8
+					&& ((header[0] & 0xff) << 8 | (header[1] & 0xff)) % 31 == 0;
+			return new InflaterInputStream(pushback, new Inflater(!zlib));
+		}
+		return in;
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e.getMessage());
+		}
+	}
+
+	/**
+	 * @return the buffer of the calling thread, so that a report that did not
+	 *         change is digested without allocating a copy of it.
+	 */
+	private static ReportBuffer getReportBuffer() {
+		ReportBuffer buffer = (ReportBuffer) reportBuffers.get();
+		if (buffer == null) {
+			buffer = new ReportBuffer();
+			reportBuffers.set(buffer);
+		}
+		return buffer;
+	}
+
+	private static String getHeader(HttpMethod method, String name) {
+		Header header = method.getResponseHeader(name);
+		return header == null ? null : header.getValue();
 	}
 
 	public static DashBoardProjects getProjects(Reader reader) throws IOException, SAXException {
-		DashBoardProjects projects = (DashBoardProjects) createDigester().parse(reader);
+		return getProjects(reader, (Set) null);
+	}
+
+	public static DashBoardProjects getProjects(Reader reader, Set projectNames) throws IOException, SAXException {
+		return getProjects(reader, JCCTraySettings.getInstance().get(ISettingsConstants.XML_PARSER), projectNames);
+	}
+
+	/**
+	 * @param parser
+	 *            {@link #STAX} or {@link #DIGESTER}.
+	 * @param projectNames
+	 *            the names of the projects to read, or <code>null</code> to
+	 *            read all of them.
+	 */
+	public static DashBoardProjects getProjects(Reader reader, String parser, Set projectNames) throws IOException,
+			SAXException {
+		DashBoardProjects projects;
+		if (DIGESTER.equals(parser))
+			projects = select((DashBoardProjects) createDigester().parse(reader), projectNames);
+		else
+			projects = parseProjects(reader, projectNames);
 		if (projects == null)
 			projects = new DashBoardProjects();
 		return projects;
 	}
 
 	public static DashBoardProjects getProjects(InputStream inStream) throws IOException, SAXException {
-		return getProjects(new InputStreamReader(inStream));
+		return getProjects(inStream, null);
+	}
+
+	public static DashBoardProjects getProjects(InputStream inStream, Set projectNames) throws IOException,
+			SAXException {
+		return getProjects(new InputStreamReader(inStream), projectNames);
+	}
+
+	private static XMLInputFactory createInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		return factory;
 	}
 
 	private static Digester createDigester() {
@@ -76,4 +302,94 @@ public class DashboardXmlParser {
 		digester.addRule("Projects/Project", new SetNextRule("add"));
 		return digester;
 	}
+
+	private static DashBoardProjects select(DashBoardProjects projects, Set projectNames) {
+		if (projects == null || projectNames == null)
+			return projects;
+		DashBoardProjects selected = new DashBoardProjects();
+		for (Iterator iterator = projects.iterator(); iterator.hasNext();) {
+			DashBoardProject project = (DashBoardProject) iterator.next();
+			if (projectNames.contains(project.getName()))
+				selected.add(project);
+		}
+		return selected;
+	}
+
+	/**
+	 * Reads the projects with a streaming parser, the same way as the rules
+	 * of {@link #createDigester()} do: only the <code>Project</code>
+	 * elements right below a <code>Projects</code> root are read, and their
+	 * attributes are copied onto the matching properties. Only the name of
+	 * the projects that were not asked for is read.
+	 */
+	private static DashBoardProjects parseProjects(Reader reader, Set projectNames) throws SAXException {
+		XMLStreamReader xml = null;
+		try {
+			xml = inputFactory.createXMLStreamReader(reader);
+			DashBoardProjects projects = null;
+			int depth = 0;
+			while (xml.hasNext()) {
+				int event = xml.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					depth++;
+					if (depth == 1 && "Projects".equals(xml.getLocalName()))
+						projects = new DashBoardProjects();
+					else if (depth == 2 && projects != null && "Project".equals(xml.getLocalName())
+							&& (projectNames == null || projectNames.contains(xml.getAttributeValue(null, "name"))))
+						projects.add(readProject(xml));
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					depth--;
+				}
+			}
+			return projects;
+		} catch (XMLStreamException e) {
+			throw new SAXException(e);
+		} finally {
+			close(xml);
+		}
+	}
+
+	private static DashBoardProject readProject(XMLStreamReader xml) {
+		DashBoardProject project = new DashBoardProject();
+		for (int i = 0; i < xml.getAttributeCount(); i++) {
+			String name = xml.getAttributeLocalName(i);
+			String value = xml.getAttributeValue(i);
+			if ("name".equals(name))
+				project.setName(value);
+			else if ("category".equals(name))
+				project.setCategory(value);
+			else if ("activity".equals(name))
+				project.setActivity(value);
+			else if ("lastBuildStatus".equals(name))
+				project.setLastBuildStatus(value);
+			else if ("lastBuildLabel".equals(name))
+				project.setLastBuildLabel(value);
+			else if ("lastBuildTime".equals(name))
+				project.setLastBuildTime(value);
+			else if ("nextBuildTime".equals(name))
+				project.setNextBuildTime(value);
+			else if ("webUrl".equals(name))
+				project.setWebUrl(value);
+			else if ("enabled".equals(name))
+				project.setEnabled(toBoolean(value));
+		}
+		return project;
+	}
+
+	/**
+	 * Converts a value the way the bean utilities used by the digester do.
+	 */
+	private static boolean toBoolean(String value) {
+		return "true".equalsIgnoreCase(value) || "yes".equalsIgnoreCase(value) || "y".equalsIgnoreCase(value)
+				|| "on".equalsIgnoreCase(value) || "1".equals(value);
+	}
+
+	private static void close(XMLStreamReader xml) {
+		try {
+			if (xml != null)
+				xml.close();
+		} catch (XMLStreamException e) {
+			// ignore
+		}
+	}
 }
@@ -15,6 +15,8 @@
  ******************************************************************************/
 package net.sourceforge.jcctray.model;
 
+import java.util.Set;
+import java.util.concurrent.Future;
 import java.util.TimeZone;
 
 /**
@@ -22,7 +24,7 @@ import java.util.TimeZone;
  * 
  * @author Ketan Padegaonkar
  */
-public class DefaultCruise implements ICruise {
+public class DefaultCruise implements IFilteringCruise {
 
 	public void forceBuild(DashBoardProject project) throws Exception {
 
@@ -40,4 +42,16 @@ public class DefaultCruise implements ICruise {
 		return new DashBoardProjects();
 	}
 
+	public DashBoardProjects getProjects(Host host, Set projectNames) {
+		return new DashBoardProjects();
+	}
+
+	public Future getProjectsAsync(Host host, Set projectNames) {
+		return CruiseExecutor.getInstance().getProjects(this, host, projectNames);
+	}
+
+	public Future forceBuildAsync(DashBoardProject project) {
+		return CruiseExecutor.getInstance().forceBuild(this, project);
+	}
+
 }
\ No newline at end of file
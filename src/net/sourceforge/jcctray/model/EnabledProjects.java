@@ -0,0 +1,95 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The projects that are enabled in the {@link IJCCTraySettings}, indexed by
+ * host string and project name. An index cannot be changed; the settings
+ * build a new one, with a higher version, whenever they change.
+ * 
+ * @see IJCCTraySettings#getEnabledProjects()
+ */
+public final class EnabledProjects {
+
+	/** An index of no projects, older than any other. */
+	public static final EnabledProjects	NONE	= new EnabledProjects(0, Collections.EMPTY_MAP);
+
+	private final long					version;
+	private final Map					namesByHost;
+
+	private EnabledProjects(long version, Map namesByHost) {
+		this.version = version;
+		this.namesByHost = namesByHost;
+	}
+
+	/**
+	 * Indexes the enabled projects of the given hosts.
+	 */
+	public static EnabledProjects of(long version, Collection hosts) {
+		Map namesByHost = new HashMap();
+		for (Iterator iterator = hosts.iterator(); iterator.hasNext();) {
+			Host host = (Host) iterator.next();
+			Set names = new HashSet();
+			for (Iterator iterator2 = host.getConfiguredProjects().iterator(); iterator2.hasNext();) {
+				DashBoardProject project = (DashBoardProject) iterator2.next();
+				if (project.isEnabled())
+					names.add(project.getName());
+			}
+			namesByHost.put(host.getHostString(), names);
+		}
+		return new EnabledProjects(version, namesByHost);
+	}
+
+	/**
+	 * @return whether a project with the name and host string of the given
+	 *         project is enabled.
+	 */
+	public boolean contains(DashBoardProject project) {
+		Host host = project.getHost();
+		if (host == null)
+			return false;
+		Set names = (Set) namesByHost.get(host.getHostString());
+		return names != null && names.contains(project.getName());
+	}
+
+	/**
+	 * @return the number of enabled projects of the given host.
+	 */
+	public int count(Host host) {
+		Set names = (Set) namesByHost.get(host.getHostString());
+		return names == null ? 0 : names.size();
+	}
+
+	/**
+	 * @return the version of the settings this index was built from, higher
+	 *         for later settings.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public String toString() {
+		return "Enabled projects " + version + " - " + namesByHost;
+	}
+}
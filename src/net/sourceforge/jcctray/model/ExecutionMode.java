@@ -0,0 +1,159 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+/**
+ * How background work, such as polling hosts and forcing builds, is run:
+ * either on a bounded pool of platform threads, or on a new virtual thread for
+ * every task. Virtual threads are cheap and are never pooled. They need Java
+ * 21, and are created by reflection so that JCCTray still runs on older
+ * versions, which fall back to platform threads.
+ * 
+ * @see ISettingsConstants#EXECUTION_MODE
+ */
+public final class ExecutionMode {
+
+	private static final Logger			log					= Logger.getLogger(ExecutionMode.class);
+
+	/** A bounded pool of platform threads, the default. */
+	public static final ExecutionMode	PLATFORM			= new ExecutionMode("platform");
+
+	/** One virtual thread per task, for many concurrent blocking calls. */
+	public static final ExecutionMode	VIRTUAL				= new ExecutionMode("virtual");
+
+	private static final Method			OF_VIRTUAL			= findMethod("java.lang.Thread", "ofVirtual", new Class[0]);
+	private static final Method			NAME				= findMethod("java.lang.Thread$Builder", "name",
+																	new Class[] { String.class, long.class });
+	private static final Method			FACTORY				= findMethod("java.lang.Thread$Builder", "factory",
+																	new Class[0]);
+	private static final Method			PER_TASK_EXECUTOR	= findMethod("java.util.concurrent.Executors",
+																	"newThreadPerTaskExecutor",
+																	new Class[] { ThreadFactory.class });
+
+	private final String				name;
+
+	private ExecutionMode(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @return the mode with the given name, {@link #PLATFORM} for unknown
+	 *         names and for {@link #VIRTUAL} if virtual threads are not
+	 *         available.
+	 */
+	public static ExecutionMode valueOf(String name) {
+		if (VIRTUAL.name.equalsIgnoreCase(name) && VIRTUAL.isAvailable())
+			return VIRTUAL;
+		return PLATFORM;
+	}
+
+	/**
+	 * @return whether threads of this mode can be created in this JVM.
+	 */
+	public boolean isAvailable() {
+		return this == PLATFORM
+				|| (OF_VIRTUAL != null && NAME != null && FACTORY != null && PER_TASK_EXECUTOR != null);
+	}
+
+	/**
+	 * @return this mode, or {@link #PLATFORM} if this mode is not available.
+	 */
+	public ExecutionMode availableMode() {
+		if (isAvailable())
+			return this;
+		log.warn("Virtual threads are not available, using platform threads");
+		return PLATFORM;
+	}
+
+	/**
+	 * @param platformThreads
+	 *            the number of threads of a pool of platform threads.
+	 * @return an executor that runs tasks on at most
+	 *         <code>platformThreads</code> platform threads, queueing the
+	 *         other tasks, or that starts a new virtual thread for every task.
+	 *         The threads are named <code>namePrefix</code> followed by a
+	 *         number.
+	 */
+	public ExecutorService newExecutor(String namePrefix, int platformThreads) {
+		if (this == VIRTUAL) {
+			try {
+				return (ExecutorService) PER_TASK_EXECUTOR.invoke(null,
+						new Object[] { newThreadFactory(namePrefix) });
+			} catch (Exception e) {
+				log.warn("Could not create virtual threads, using platform threads", e);
+			}
+		}
+		int poolSize = Math.max(1, platformThreads);
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue(), new PlatformThreadFactory(namePrefix));
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * @return a factory of threads named <code>namePrefix</code> followed by
+	 *         a number. Platform threads are daemon threads, virtual threads
+	 *         always are.
+	 */
+	public ThreadFactory newThreadFactory(String namePrefix) {
+		if (this == VIRTUAL) {
+			try {
+				Object builder = OF_VIRTUAL.invoke(null, new Object[0]);
+				builder = NAME.invoke(builder, new Object[] { namePrefix, Long.valueOf(1) });
+				return (ThreadFactory) FACTORY.invoke(builder, new Object[0]);
+			} catch (Exception e) {
+				log.warn("Could not create virtual threads, using platform threads", e);
+			}
+		}
+		return new PlatformThreadFactory(namePrefix);
+	}
+
+	private static Method findMethod(String className, String methodName, Class[] parameterTypes) {
+		try {
+			return Class.forName(className).getMethod(methodName, parameterTypes);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	public String toString() {
+		return name;
+	}
+
+	private static final class PlatformThreadFactory implements ThreadFactory {
+		private final String	namePrefix;
+		private int				threadCount;
+
+		private PlatformThreadFactory(String namePrefix) {
+			this.namePrefix = namePrefix;
+		}
+
+		public synchronized Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, namePrefix + (++threadCount));
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
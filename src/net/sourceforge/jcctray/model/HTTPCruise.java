@@ -16,20 +16,18 @@
 package net.sourceforge.jcctray.model;
 
 import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.Future;
 
 import net.sourceforge.jcctray.exceptions.HTTPErrorException;
 import net.sourceforge.jcctray.exceptions.InvocationException;
-import net.sourceforge.jcctray.utils.StringUtils;
+import net.sourceforge.jcctray.utils.DateEngine;
 
 import org.apache.commons.httpclient.DefaultHttpMethodRetryHandler;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.HttpStatus;
-import org.apache.commons.httpclient.SimpleHttpConnectionManager;
-import org.apache.commons.httpclient.UsernamePasswordCredentials;
-import org.apache.commons.httpclient.auth.AuthScope;
 import org.apache.commons.httpclient.methods.GetMethod;
-import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
 import org.apache.commons.httpclient.params.HttpMethodParams;
 import org.apache.log4j.Logger;
 
@@ -38,24 +36,11 @@ import org.apache.log4j.Logger;
  * 
  * @author Ketan Padegaonkar
  */
-public abstract class HTTPCruise implements ICruise {
+public abstract class HTTPCruise implements IFilteringCruise {
 
 
 	private static HttpClient getClient(Host host) {
-		SimpleHttpConnectionManager connectionManager =  new SimpleHttpConnectionManager();
-		HttpConnectionManagerParams connParams = new HttpConnectionManagerParams();
-		connParams.setConnectionTimeout(JCCTraySettings.getInstance().getInt(ISettingsConstants.HTTP_TIMEOUT));
-		connParams.setSoTimeout(JCCTraySettings.getInstance().getInt(ISettingsConstants.HTTP_TIMEOUT));
-		connectionManager.setParams(connParams);
-		HttpClient client = new HttpClient(connectionManager);
-
-		client.getParams().setAuthenticationPreemptive(true);
-		if (!StringUtils.isEmptyOrNull(host.getHostName()) && !StringUtils.isEmptyOrNull(host.getPassword())){
-			UsernamePasswordCredentials credentials = new UsernamePasswordCredentials(host.getUsername(), host.getPassword());
-			client.getState().setCredentials(new AuthScope(null, -1, null, null), credentials);
-		}
-
-		return client;
+		return HttpClientPool.getInstance().getClient(host);
 	}
 
 	public void forceBuild(DashBoardProject project) throws Exception {
@@ -127,14 +112,44 @@ public abstract class HTTPCruise implements ICruise {
 	protected abstract String forceBuildURL(DashBoardProject project);
 
 	public DashBoardProjects getProjects(Host host) throws Exception {
-		DashBoardProjects projects = DashboardXmlParser.getProjects(getXmlReportURL(host), getClient(host));
-		for (int i = 0; i < projects.count(); i++)
-			projects.getProject(i).setHost(host);
-		return projects;
+		return getProjects(host, null);
+	}
+
+	public DashBoardProjects getProjects(Host host, Set projectNames) throws Exception {
+		return RequestCoalescer.getInstance().getProjects(getXmlReportURL(host), getClient(host), host, projectNames);
+	}
+
+	/**
+	 * Fetches the projects like {@link #getProjects(Host, Set)}, without
+	 * waiting for them.
+	 * 
+	 * @see CruiseExecutor#getProjects(ICruise, Host, Set)
+	 */
+	public Future getProjectsAsync(Host host, Set projectNames) {
+		return CruiseExecutor.getInstance().getProjects(this, host, projectNames);
+	}
+
+	/**
+	 * Forces a build like {@link #forceBuild(DashBoardProject)}, without
+	 * waiting for the server.
+	 * 
+	 * @see CruiseExecutor#forceBuild(ICruise, DashBoardProject)
+	 */
+	public Future forceBuildAsync(DashBoardProject project) {
+		return CruiseExecutor.getInstance().forceBuild(this, project);
 	}
 
 	protected abstract String getXmlReportURL(Host host);
 
+	/**
+	 * @return the engine that reads the build timestamps of this cruise.
+	 *         Clients may override, the default reads timestamps that carry
+	 *         their offset from UTC.
+	 */
+	protected DateEngine getDateEngine() {
+		return DateEngine.ZONED;
+	}
+
 	protected Logger getLog() {
 		return Logger.getLogger(getClass());
 	}
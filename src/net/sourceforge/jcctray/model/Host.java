@@ -17,6 +17,8 @@ package net.sourceforge.jcctray.model;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 
@@ -33,6 +35,8 @@ public class Host {
 	private ICruise				cruise;
 	private String 				username;
 	private String 				password;
+	private int					pollInterval;
+	private final HostHealth	health	= new HostHealth();
 
 	public Host() {
 		this("", "");
@@ -91,6 +95,27 @@ public class Host {
 		this.password = password;
 	}
 
+	/**
+	 * @return the number of seconds between two polls of this host, or
+	 *         <code>0</code> if the host is polled at the global
+	 *         {@link ISettingsConstants#POLL_INTERVAL}.
+	 */
+	public int getPollInterval() {
+		return pollInterval;
+	}
+
+	public void setPollInterval(int pollInterval) {
+		this.pollInterval = pollInterval;
+	}
+
+	/**
+	 * @return whether this host can currently be reached. This is runtime
+	 *         state and is not persisted.
+	 */
+	public HostHealth getHealth() {
+		return health;
+	}
+
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
@@ -145,10 +170,32 @@ public class Host {
 		return configuredProjects.values();
 	}
 
+	/**
+	 * @return all the projects on this host.
+	 */
 	public DashBoardProjects getCruiseProjects() throws Exception {
 		return getCruise().getProjects(this);
 	}
 
+	/**
+	 * @return the projects on this host that have been configured. An
+	 *         {@link IFilteringCruise} skips the others while reading the
+	 *         status report, other cruises return all the projects.
+	 */
+	public DashBoardProjects getConfiguredCruiseProjects() throws Exception {
+		ICruise cruise = getCruise();
+		if (cruise instanceof IFilteringCruise)
+			return ((IFilteringCruise) cruise).getProjects(this, getConfiguredProjectNames());
+		return cruise.getProjects(this);
+	}
+
+	/**
+	 * @return a copy of the names of the projects that have been configured.
+	 */
+	public Set getConfiguredProjectNames() {
+		return new HashSet(configuredProjects.keySet());
+	}
+
 	public DashBoardProject getConfiguredProject(String projectName) {
 		return (DashBoardProject) configuredProjects.get(projectName);
 	}
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+/**
+ * Tracks whether a {@link Host} can currently be reached. A host starts out
+ * {@link #CLOSED}, and is polled normally. After repeated failures it is
+ * {@link #OPEN}: it is not polled at all until its retry time, when it becomes
+ * {@link #HALF_OPEN} and a single probe is allowed. A successful probe closes
+ * the circuit again, a failed one opens it for longer.
+ * 
+ * @see CircuitBreaker
+ */
+public class HostHealth {
+
+	public static final int	CLOSED		= 0;
+	public static final int	OPEN		= 1;
+	public static final int	HALF_OPEN	= 2;
+
+	private int				state		= CLOSED;
+	private int				consecutiveFailures;
+	private long			retryTime;
+	private long			lastSuccessTime;
+	private Exception		lastError;
+	private boolean			late;
+
+	/**
+	 * Checks whether the host may be polled at <code>now</code>. An open
+	 * circuit whose retry time has passed moves to {@link #HALF_OPEN}.
+	 */
+	public synchronized boolean allowPoll(long now) {
+		if (state == OPEN) {
+			if (now < retryTime)
+				return false;
+			state = HALF_OPEN;
+		}
+		return true;
+	}
+
+	public synchronized void recordSuccess(long now) {
+		state = CLOSED;
+		consecutiveFailures = 0;
+		retryTime = 0;
+		lastError = null;
+		lastSuccessTime = now;
+		late = false;
+	}
+
+	/**
+	 * Records a poll that did not finish before its deadline. This is not a
+	 * failure, the host may just be slow, so the circuit is left alone.
+	 * 
+	 * @see CircuitBreaker#recordLate(Host, long)
+	 */
+	public synchronized void recordLate() {
+		late = true;
+	}
+
+	/**
+	 * Records a failed poll.
+	 * 
+	 * @param open
+	 *            whether the circuit should be opened.
+	 * @param retryTime
+	 *            the time before which the host must not be polled again, if
+	 *            the circuit is opened.
+	 */
+	public synchronized void recordFailure(Exception error, boolean open, long retryTime) {
+		consecutiveFailures++;
+		lastError = error;
+		late = false;
+		if (open) {
+			state = OPEN;
+			this.retryTime = retryTime;
+		}
+	}
+
+	public synchronized int getState() {
+		return state;
+	}
+
+	/**
+	 * @return <code>true</code> if the last poll of the host was successful.
+	 */
+	public synchronized boolean isAvailable() {
+		return consecutiveFailures == 0 && !late;
+	}
+
+	/**
+	 * @return <code>true</code> if the last poll of the host did not finish
+	 *         in time.
+	 */
+	public synchronized boolean isLate() {
+		return late;
+	}
+
+	public synchronized int getConsecutiveFailures() {
+		return consecutiveFailures;
+	}
+
+	/**
+	 * @return the time at which an open circuit may be probed, or
+	 *         <code>0</code> if the circuit is not open.
+	 */
+	public synchronized long getRetryTime() {
+		return state == OPEN ? retryTime : 0;
+	}
+
+	/**
+	 * @return the time of the last successful poll, or <code>0</code> if
+	 *         the host was never reached.
+	 */
+	public synchronized long getLastSuccessTime() {
+		return lastSuccessTime;
+	}
+
+	public synchronized Exception getLastError() {
+		return lastError;
+	}
+
+	public synchronized String toString() {
+		switch (state) {
+		case OPEN:
+			return "offline";
+		case HALF_OPEN:
+			return "reconnecting";
+		default:
+			if (consecutiveFailures > 0)
+				return "not responding";
+			return late ? "late" : "online";
+		}
+	}
+}
@@ -0,0 +1,234 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.jcctray.utils.StringUtils;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.UsernamePasswordCredentials;
+import org.apache.commons.httpclient.auth.AuthScope;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
+
+/**
+ * Hands out one long lived, thread safe {@link HttpClient} per {@link Host}.
+ * Each client has its own pool of keep-alive connections, so consecutive
+ * polls and force builds reuse an open connection instead of paying for a new
+ * TCP (and TLS) handshake every time. New TLS connections resume the session
+ * cached by the shared default SSL socket factory.
+ * <p>
+ * At most {@link ISettingsConstants#HTTP_MAX_CONNECTIONS_PER_HOST}
+ * connections are opened to a host, and connections that stay idle for
+ * longer than {@link ISettingsConstants#HTTP_IDLE_TIMEOUT} seconds are
+ * closed. A client is rebuilt when the URL, credentials or timeout of its
+ * host change. The connections of the client it replaces are closed once the
+ * requests still running on them are done.
+ */
+public class HttpClientPool {
+
+	private static final long		IDLE_CHECK_INTERVAL	= 5000;
+
+	private static HttpClientPool	instance;
+
+	private static final class PooledClient {
+		private final String								signature;
+		private final HttpClient							client;
+		private final MultiThreadedHttpConnectionManager	connectionManager;
+
+		private PooledClient(String signature, HttpClient client, MultiThreadedHttpConnectionManager connectionManager) {
+			this.signature = signature;
+			this.client = client;
+			this.connectionManager = connectionManager;
+		}
+	}
+
+	private final IJCCTraySettings		traySettings;
+	private final Map					clients	= new HashMap();
+	/** The connection managers of replaced clients that are still in use. */
+	private final List					retired	= new ArrayList();
+	private IdleConnectionTimeoutThread	idleConnectionThread;
+	private long						idleTimeout;
+
+	public HttpClientPool(IJCCTraySettings traySettings) {
+		this.traySettings = traySettings;
+	}
+
+	public static HttpClientPool getInstance() {
+		synchronized (HttpClientPool.class) {
+			if (HttpClientPool.instance == null)
+				HttpClientPool.instance = new HttpClientPool(JCCTraySettings.getInstance());
+			return HttpClientPool.instance;
+		}
+	}
+
+	/**
+	 * @return the {@link HttpClient} to use to connect to the given host.
+	 */
+	public synchronized HttpClient getClient(Host host) {
+		// picks up a changed idle timeout
+		getIdleConnectionThread();
+		shutdownReleased();
+		String signature = signature(host);
+		PooledClient pooledClient = (PooledClient) clients.get(host.getHostString());
+		if (pooledClient != null && pooledClient.signature.equals(signature))
+			return pooledClient.client;
+
+		if (pooledClient != null)
+			close(pooledClient);
+		pooledClient = createClient(host, signature);
+		clients.put(host.getHostString(), pooledClient);
+		return pooledClient.client;
+	}
+
+	/**
+	 * Closes the connections of all the hosts that are not in the given
+	 * collection of host strings.
+	 */
+	public synchronized void retainHosts(Collection hostStrings) {
+		for (Iterator iterator = clients.entrySet().iterator(); iterator.hasNext();) {
+			Map.Entry entry = (Map.Entry) iterator.next();
+			if (!hostStrings.contains(entry.getKey())) {
+				close((PooledClient) entry.getValue());
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Closes all pooled connections, and stops the idle connection thread.
+	 */
+	public synchronized void shutdown() {
+		for (Iterator iterator = clients.values().iterator(); iterator.hasNext();)
+			close((PooledClient) iterator.next());
+		clients.clear();
+		for (Iterator iterator = retired.iterator(); iterator.hasNext();)
+			shutdown((MultiThreadedHttpConnectionManager) iterator.next());
+		retired.clear();
+		if (idleConnectionThread != null) {
+			idleConnectionThread.shutdown();
+			idleConnectionThread = null;
+			idleTimeout = 0;
+		}
+	}
+
+	/**
+	 * @return the number of replaced connection managers that still have
+	 *         connections in use.
+	 */
+	synchronized int getRetiredCount() {
+		return retired.size();
+	}
+
+	/**
+	 * @return the time in ms after which idle connections are closed.
+	 */
+	synchronized long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	private PooledClient createClient(Host host, String signature) {
+		int timeout = traySettings.getInt(ISettingsConstants.HTTP_TIMEOUT);
+		int maxConnections = Math.max(1, traySettings.getInt(ISettingsConstants.HTTP_MAX_CONNECTIONS_PER_HOST));
+
+		HttpConnectionManagerParams connParams = new HttpConnectionManagerParams();
+		connParams.setConnectionTimeout(timeout);
+		connParams.setSoTimeout(timeout);
+		connParams.setDefaultMaxConnectionsPerHost(maxConnections);
+		connParams.setMaxTotalConnections(maxConnections);
+		connParams.setStaleCheckingEnabled(true);
+
+		MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
+		connectionManager.setParams(connParams);
+		HttpClient client = new HttpClient(connectionManager);
+
+		client.getParams().setAuthenticationPreemptive(true);
+		if (!StringUtils.isEmptyOrNull(host.getHostName()) && !StringUtils.isEmptyOrNull(host.getPassword())) {
+			UsernamePasswordCredentials credentials = new UsernamePasswordCredentials(host.getUsername(), host
+					.getPassword());
+			client.getState().setCredentials(new AuthScope(null, -1, null, null), credentials);
+		}
+
+		getIdleConnectionThread().addConnectionManager(connectionManager);
+		return new PooledClient(signature, client, connectionManager);
+	}
+
+	/**
+	 * @return the idle connection thread, started if needed, closing the
+	 *         connections that have been idle for longer than the current
+	 *         {@link ISettingsConstants#HTTP_IDLE_TIMEOUT}.
+	 */
+	private IdleConnectionTimeoutThread getIdleConnectionThread() {
+		if (idleConnectionThread == null) {
+			idleConnectionThread = new IdleConnectionTimeoutThread();
+			idleConnectionThread.setName("IdleHttpConnectionCloser");
+			idleConnectionThread.setTimeoutInterval(IDLE_CHECK_INTERVAL);
+			idleConnectionThread.start();
+		}
+		long idleTimeout = Math.max(1, traySettings.getInt(ISettingsConstants.HTTP_IDLE_TIMEOUT)) * 1000L;
+		if (idleTimeout != this.idleTimeout) {
+			idleConnectionThread.setConnectionTimeout(idleTimeout);
+			this.idleTimeout = idleTimeout;
+		}
+		return idleConnectionThread;
+	}
+
+	/**
+	 * Retires the connection manager of a client that is no longer handed
+	 * out. Requests may still be running on it, so it is only shut down once
+	 * their connections are released.
+	 */
+	private void close(PooledClient pooledClient) {
+		retired.add(pooledClient.connectionManager);
+		shutdownReleased();
+	}
+
+	/**
+	 * Shuts down the retired connection managers that have no connection in
+	 * use anymore.
+	 */
+	private void shutdownReleased() {
+		for (Iterator iterator = retired.iterator(); iterator.hasNext();) {
+			MultiThreadedHttpConnectionManager connectionManager = (MultiThreadedHttpConnectionManager) iterator
+					.next();
+			connectionManager.closeIdleConnections(0);
+			connectionManager.deleteClosedConnections();
+			if (connectionManager.getConnectionsInPool() == 0) {
+				shutdown(connectionManager);
+				iterator.remove();
+			}
+		}
+	}
+
+	private void shutdown(MultiThreadedHttpConnectionManager connectionManager) {
+		if (idleConnectionThread != null)
+			idleConnectionThread.removeConnectionManager(connectionManager);
+		connectionManager.shutdown();
+	}
+
+	private String signature(Host host) {
+		return host.getHostName() + "|" + host.getUsername() + "|" + host.getPassword() + "|"
+				+ traySettings.getInt(ISettingsConstants.HTTP_TIMEOUT) + "|"
+				+ traySettings.getInt(ISettingsConstants.HTTP_MAX_CONNECTIONS_PER_HOST);
+	}
+}
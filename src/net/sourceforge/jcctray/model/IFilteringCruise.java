@@ -0,0 +1,35 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.Set;
+
+/**
+ * An {@link ICruise} that can skip the projects nobody asked for while it
+ * reads the status report. Other implementations of {@link ICruise} return
+ * all their projects.
+ * 
+ * @see Host#getConfiguredCruiseProjects()
+ */
+public interface IFilteringCruise extends ICruise {
+
+	/**
+	 * @param projectNames
+	 *            the names of the projects to return, projects with other
+	 *            names are skipped. <code>null</code> returns all projects.
+	 */
+	public DashBoardProjects getProjects(Host host, Set projectNames) throws Exception;
+}
@@ -57,4 +57,10 @@ public interface IJCCTraySettings {
 
 	public abstract HashMap getSettings();
 
+	/**
+	 * @return the projects that are enabled, as of the last time hosts were
+	 *         added or removed, or the settings were loaded or saved.
+	 */
+	public abstract EnabledProjects getEnabledProjects();
+
 }
\ No newline at end of file
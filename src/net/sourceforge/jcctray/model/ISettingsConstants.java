@@ -21,7 +21,21 @@ package net.sourceforge.jcctray.model;
  * @author Ketan Padegaonkar
  */
 public interface ISettingsConstants {
-	public static final String	POLL_INTERVAL	= "poll.interval";
-	public static final String	BROWSER_PATH	= "browser.path";
-	public static final String	HTTP_TIMEOUT	= "http.timeout";
+	public static final String	POLL_INTERVAL					= "poll.interval";
+	public static final String	BROWSER_PATH					= "browser.path";
+	public static final String	HTTP_TIMEOUT					= "http.timeout";
+	public static final String	POLL_THREADS					= "poll.threads";
+	public static final String	POLL_ADAPTIVE					= "poll.adaptive";
+	public static final String	POLL_INTERVAL_MIN				= "poll.interval.min";
+	public static final String	POLL_INTERVAL_MAX				= "poll.interval.max";
+	public static final String	CIRCUIT_FAILURE_THRESHOLD		= "circuit.failure.threshold";
+	public static final String	CIRCUIT_BACKOFF_INITIAL			= "circuit.backoff.initial";
+	public static final String	CIRCUIT_BACKOFF_MAX				= "circuit.backoff.max";
+	public static final String	HTTP_MAX_CONNECTIONS_PER_HOST	= "http.connections.per.host";
+	public static final String	HTTP_IDLE_TIMEOUT				= "http.idle.timeout";
+	public static final String	XML_PARSER						= "xml.parser";
+	public static final String	EXECUTION_MODE					= "execution.mode";
+	public static final String	POLL_DEADLINE					= "poll.deadline";
+	public static final String	POLL_HOST_DEADLINE				= "poll.host.deadline";
+	public static final String	POLL_LATE_POLICY				= "poll.late.policy";
 }
@@ -71,20 +71,51 @@ public class JCCTraySettings implements ISettingsConstants, IJCCTraySettings {
 
 	private HashMap					settings;
 
+	private volatile EnabledProjects	enabledProjects	= EnabledProjects.NONE;
+
 	public JCCTraySettings() {
 		hosts = new HashMap();
 		settings = new HashMap();
 		initializeDefaultSettings();
 	}
 
+	/**
+	 * Indexes the enabled projects again. Projects are enabled and disabled
+	 * on the hosts themselves, and the settings are saved right after.
+	 */
+	private synchronized void indexEnabledProjects() {
+		enabledProjects = EnabledProjects.of(enabledProjects.getVersion() + 1, hosts.values());
+	}
+
+	public EnabledProjects getEnabledProjects() {
+		return enabledProjects;
+	}
+
 	private void initializeDefaultSettings() {
 		set(ISettingsConstants.POLL_INTERVAL, "5");
 		set(ISettingsConstants.HTTP_TIMEOUT, "30000");
 		set(ISettingsConstants.BROWSER_PATH, "");
+		set(ISettingsConstants.POLL_THREADS, "8");
+		set(ISettingsConstants.POLL_ADAPTIVE, "true");
+		set(ISettingsConstants.POLL_INTERVAL_MIN, "2");
+		// an idle host is polled at most one interval later than without backoff
+		set(ISettingsConstants.POLL_INTERVAL_MAX, "10");
+		set(ISettingsConstants.CIRCUIT_FAILURE_THRESHOLD, "3");
+		set(ISettingsConstants.CIRCUIT_BACKOFF_INITIAL, "30");
+		set(ISettingsConstants.CIRCUIT_BACKOFF_MAX, "600");
+		set(ISettingsConstants.HTTP_MAX_CONNECTIONS_PER_HOST, "2");
+		set(ISettingsConstants.HTTP_IDLE_TIMEOUT, "60");
+		set(ISettingsConstants.XML_PARSER, "stax");
+		set(ISettingsConstants.EXECUTION_MODE, "platform");
+		set(ISettingsConstants.POLL_DEADLINE, "60");
+		// longer than the http timeout, so that a dead host fails rather than being late
+		set(ISettingsConstants.POLL_HOST_DEADLINE, "45");
+		set(ISettingsConstants.POLL_LATE_POLICY, "finish");
 	}
 
 	public void addHost(Host host) {
 		hosts.put(host.getHostString(), host);
+		indexEnabledProjects();
 	}
 
 	public int hostCount() {
@@ -98,6 +129,7 @@ public class JCCTraySettings implements ISettingsConstants, IJCCTraySettings {
 	public void clear() {
 		hosts.clear();
 		settings.clear();
+		indexEnabledProjects();
 	}
 
 	public void removeHost(Host host) {
@@ -106,6 +138,7 @@ public class JCCTraySettings implements ISettingsConstants, IJCCTraySettings {
 
 	private void removeHost(String hostString) {
 		hosts.remove(hostString);
+		indexEnabledProjects();
 	}
 
 	public Collection getHosts() {
@@ -117,6 +150,7 @@ public class JCCTraySettings implements ISettingsConstants, IJCCTraySettings {
 	}
 
 	void save(String configFile) throws IOException {
+		indexEnabledProjects();
 		ObjectPersister.saveSettings(this, configFile);
 	}
 
@@ -128,6 +162,7 @@ public class JCCTraySettings implements ISettingsConstants, IJCCTraySettings {
 		JCCTraySettings traySettings = ObjectPersister.loadJCCTraySettings(fileName);
 		this.hosts = traySettings.hosts;
 		this.settings = traySettings.settings;
+		indexEnabledProjects();
 	}
 
 	public static IJCCTraySettings getInstance() {
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Decides which of the hosts that are due are actually polled, from the
+ * {@link EnabledProjects} of the settings:
+ * <ul>
+ * <li>hosts without any configured project are skipped, nobody would see
+ * their results;</li>
+ * <li>hosts whose projects are all disabled are deferred: they are polled
+ * after the other hosts, since their projects are filtered out of the table
+ * and only show up in notifications;</li>
+ * <li>the other hosts are polled first, in the order they became due.</li>
+ * </ul>
+ * The last decision about every host is kept, to tell why a host was or was
+ * not polled.
+ */
+public class PollPlanner {
+
+	public static final String	POLL	= "poll";
+	public static final String	DEFER	= "defer";
+	public static final String	SKIP	= "skip";
+
+	private static final Logger	log		= Logger.getLogger(PollPlanner.class);
+
+	/**
+	 * What was decided about a host, and why.
+	 */
+	public static final class Decision {
+		private final Host		host;
+		private final String	action;
+		private final String	reason;
+
+		private Decision(Host host, String action, String reason) {
+			this.host = host;
+			this.action = action;
+			this.reason = reason;
+		}
+
+		public Host getHost() {
+			return host;
+		}
+
+		/**
+		 * @return one of {@link PollPlanner#POLL}, {@link PollPlanner#DEFER}
+		 *         and {@link PollPlanner#SKIP}.
+		 */
+		public String getAction() {
+			return action;
+		}
+
+		public String getReason() {
+			return reason;
+		}
+
+		public boolean isPolled() {
+			return action != SKIP;
+		}
+
+		public String toString() {
+			return action + " " + host + ": " + reason;
+		}
+	}
+
+	private final IJCCTraySettings	traySettings;
+	/** The last decision about each host, by host string. */
+	private final Map				decisions	= new HashMap();
+
+	public PollPlanner(IJCCTraySettings traySettings) {
+		this.traySettings = traySettings;
+	}
+
+	/**
+	 * @param dueHosts
+	 *            the {@link Host}s that are due to be polled.
+	 * @return the {@link Decision}s about the given hosts, the hosts to poll
+	 *         first, in the order they should be polled, followed by the
+	 *         hosts to skip.
+	 */
+	public List plan(Collection dueHosts) {
+		EnabledProjects enabledProjects = traySettings.getEnabledProjects();
+		List polled = new ArrayList();
+		List deferred = new ArrayList();
+		List skipped = new ArrayList();
+		for (Iterator iterator = dueHosts.iterator(); iterator.hasNext();) {
+			Host host = (Host) iterator.next();
+			int configured = host.configuredProjectCount();
+			int enabled = enabledProjects.count(host);
+			if (configured == 0)
+				skipped.add(new Decision(host, SKIP, "no configured projects"));
+			else if (enabled == 0)
+				deferred.add(new Decision(host, DEFER, "all " + configured + " projects are disabled"));
+			else
+				polled.add(new Decision(host, POLL, enabled + " of " + configured + " projects are enabled"));
+		}
+		List plan = new ArrayList(polled);
+		plan.addAll(deferred);
+		plan.addAll(skipped);
+		record(plan);
+		return plan;
+	}
+
+	/**
+	 * @return the last decision about the given host, or <code>null</code>
+	 *         if it was never due.
+	 */
+	public synchronized Decision getDecision(Host host) {
+		return (Decision) decisions.get(host.getHostString());
+	}
+
+	private synchronized void record(List plan) {
+		for (Iterator iterator = plan.iterator(); iterator.hasNext();) {
+			Decision decision = (Decision) iterator.next();
+			decisions.put(decision.getHost().getHostString(), decision);
+			if (log.isDebugEnabled())
+				log.debug("Planned poll: " + decision);
+		}
+	}
+
+	/**
+	 * Forgets the hosts that are no longer configured.
+	 */
+	public synchronized void retainHosts(Collection hostStrings) {
+		decisions.keySet().retainAll(hostStrings);
+	}
+}
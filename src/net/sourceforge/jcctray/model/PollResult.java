@@ -0,0 +1,95 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+/**
+ * The outcome of fetching the project list of a single {@link Host}.
+ * 
+ * @see PollingEngine
+ */
+public class PollResult {
+
+	private final Host				host;
+	private final DashBoardProjects	projects;
+	private final Exception			error;
+	private final long				elapsedMillis;
+	private final boolean			late;
+
+	public PollResult(Host host, DashBoardProjects projects, long elapsedMillis) {
+		this(host, projects, null, elapsedMillis, false);
+	}
+
+	public PollResult(Host host, Exception error, long elapsedMillis) {
+		this(host, null, error, elapsedMillis, false);
+	}
+
+	private PollResult(Host host, DashBoardProjects projects, Exception error, long elapsedMillis, boolean late) {
+		this.host = host;
+		this.projects = projects;
+		this.error = error;
+		this.elapsedMillis = elapsedMillis;
+		this.late = late;
+	}
+
+	/**
+	 * @return the result of a host that did not answer before the deadline.
+	 */
+	public static PollResult late(Host host, long elapsedMillis) {
+		return new PollResult(host, null, null, elapsedMillis, true);
+	}
+
+	public Host getHost() {
+		return host;
+	}
+
+	/**
+	 * @return the projects returned by the host, or <code>null</code> if the
+	 *         fetch failed.
+	 */
+	public DashBoardProjects getProjects() {
+		return projects;
+	}
+
+	/**
+	 * @return the exception thrown while fetching the projects, or
+	 *         <code>null</code> if the fetch was successful.
+	 */
+	public Exception getError() {
+		return error;
+	}
+
+	public boolean isSuccessful() {
+		return error == null && !late;
+	}
+
+	/**
+	 * @return <code>true</code> if the host did not answer in time, the
+	 *         result then has neither projects nor an error.
+	 */
+	public boolean isLate() {
+		return late;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public String toString() {
+		if (late)
+			return "PollResult - " + host + " - late";
+		return "PollResult - " + host + (isSuccessful() ? " - " + projects : " - failed: " + error);
+	}
+}
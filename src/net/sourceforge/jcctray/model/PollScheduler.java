@@ -0,0 +1,226 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Decides when each {@link Host} is due to be polled. Every host is polled at
+ * its own {@link Host#getPollInterval()}, falling back to the global
+ * {@link ISettingsConstants#POLL_INTERVAL}. Hosts waiting for their next poll
+ * are kept in a queue ordered by the time they are due.
+ * <p>
+ * Hosts returned by {@link #dueHosts(long)} are taken off the queue until
+ * they are handed back through {@link #reschedule(Host, long)}, so a host is
+ * never polled twice at the same time.
+ * <p>
+ * When {@link ISettingsConstants#POLL_ADAPTIVE} is enabled, a host with a
+ * configured project that is building or checking modifications is polled
+ * every {@link ISettingsConstants#POLL_INTERVAL_MIN} seconds. Once all its
+ * projects are idle again, the interval is doubled on every poll, up to
+ * {@link ISettingsConstants#POLL_INTERVAL_MAX} seconds.
+ * <p>
+ * Hosts that are offline according to their {@link HostHealth} are not
+ * returned before their retry time.
+ */
+public class PollScheduler {
+
+	private static final int	BACKOFF_FACTOR	= 2;
+
+	private static final class ScheduledHost implements Comparable {
+		private final long	sequence;
+		private Host		host;
+		private long		dueTime;
+		private long		interval;
+		private boolean		queued;
+
+		private ScheduledHost(Host host, long dueTime, long sequence) {
+			this.host = host;
+			this.dueTime = dueTime;
+			this.sequence = sequence;
+		}
+
+		public int compareTo(Object o) {
+			ScheduledHost other = (ScheduledHost) o;
+			if (dueTime != other.dueTime)
+				return dueTime < other.dueTime ? -1 : 1;
+			if (sequence != other.sequence)
+				return sequence < other.sequence ? -1 : 1;
+			return 0;
+		}
+	}
+
+	private final IJCCTraySettings	traySettings;
+	private final TreeSet			queue		= new TreeSet();
+	private final Map				scheduled	= new HashMap();
+	private long					sequence;
+
+	public PollScheduler(IJCCTraySettings traySettings) {
+		this.traySettings = traySettings;
+	}
+
+	/**
+	 * Returns the hosts that are due to be polled at <code>now</code>, and
+	 * takes them off the queue. Hosts that were added to the settings since
+	 * the last call are due immediately, hosts that were removed are dropped.
+	 */
+	public synchronized List dueHosts(long now) {
+		synchronizeWithSettings(now);
+		List dueHosts = new ArrayList();
+		while (!queue.isEmpty()) {
+			ScheduledHost next = (ScheduledHost) queue.first();
+			if (next.dueTime > now)
+				break;
+			queue.remove(next);
+			if (!next.host.getHealth().allowPoll(now)) {
+				next.dueTime = next.host.getHealth().getRetryTime();
+				queue.add(next);
+				continue;
+			}
+			next.queued = false;
+			dueHosts.add(next.host);
+		}
+		return dueHosts;
+	}
+
+	/**
+	 * Puts a host that has just been polled back on the queue, to be polled
+	 * again after its poll interval.
+	 */
+	public void reschedule(Host host, long now) {
+		reschedule(host, null, now);
+	}
+
+	/**
+	 * Puts a host that has just been polled back on the queue. The time to
+	 * the next poll is adapted to the activity of the projects the host
+	 * returned.
+	 * 
+	 * @param projects
+	 *            the projects returned by the host, or <code>null</code> if
+	 *            the poll failed.
+	 */
+	public synchronized void reschedule(Host host, DashBoardProjects projects, long now) {
+		ScheduledHost scheduledHost = (ScheduledHost) scheduled.get(host.getHostString());
+		if (scheduledHost == null)
+			return;
+		if (scheduledHost.queued)
+			queue.remove(scheduledHost);
+		scheduledHost.interval = nextInterval(scheduledHost, projects);
+		scheduledHost.dueTime = Math.max(now + scheduledHost.interval, scheduledHost.host.getHealth().getRetryTime());
+		scheduledHost.queued = true;
+		queue.add(scheduledHost);
+	}
+
+	/**
+	 * Puts the given hosts back on the queue, unless they have been
+	 * rescheduled already. A poll that was aborted hands back the hosts it
+	 * took off the queue this way, so that they are not dropped.
+	 */
+	public synchronized void requeue(Collection hosts, long now) {
+		for (Iterator iterator = hosts.iterator(); iterator.hasNext();) {
+			Host host = (Host) iterator.next();
+			ScheduledHost scheduledHost = (ScheduledHost) scheduled.get(host.getHostString());
+			if (scheduledHost != null && !scheduledHost.queued)
+				reschedule(host, now);
+		}
+	}
+
+	/**
+	 * @return the time at which the next host is due, or
+	 *         {@link Long#MAX_VALUE} if no host is waiting to be polled.
+	 */
+	public synchronized long nextDueTime() {
+		if (queue.isEmpty())
+			return Long.MAX_VALUE;
+		return ((ScheduledHost) queue.first()).dueTime;
+	}
+
+	/**
+	 * @return the time in milliseconds between two polls of the given host.
+	 */
+	public long getPollIntervalMillis(Host host) {
+		int pollInterval = host.getPollInterval();
+		if (pollInterval <= 0)
+			pollInterval = traySettings.getInt(ISettingsConstants.POLL_INTERVAL);
+		return Math.max(1, pollInterval) * 1000L;
+	}
+
+	private long nextInterval(ScheduledHost scheduledHost, DashBoardProjects projects) {
+		long pollInterval = getPollIntervalMillis(scheduledHost.host);
+		if (projects == null || !isAdaptive())
+			return pollInterval;
+		if (hasActiveProjects(scheduledHost.host, projects))
+			return Math.min(pollInterval, getSettingMillis(ISettingsConstants.POLL_INTERVAL_MIN));
+		if (scheduledHost.interval < pollInterval)
+			return pollInterval;
+		long maxInterval = Math.max(pollInterval, getSettingMillis(ISettingsConstants.POLL_INTERVAL_MAX));
+		return Math.min(scheduledHost.interval * BACKOFF_FACTOR, maxInterval);
+	}
+
+	private boolean hasActiveProjects(Host host, DashBoardProjects projects) {
+		for (Iterator iterator = projects.iterator(); iterator.hasNext();) {
+			DashBoardProject project = (DashBoardProject) iterator.next();
+			if (project.isActive() && host.getConfiguredProject(project.getName()) != null)
+				return true;
+		}
+		return false;
+	}
+
+	private boolean isAdaptive() {
+		return Boolean.valueOf(traySettings.get(ISettingsConstants.POLL_ADAPTIVE)).booleanValue();
+	}
+
+	private long getSettingMillis(String key) {
+		return Math.max(1, traySettings.getInt(key)) * 1000L;
+	}
+
+	private void synchronizeWithSettings(long now) {
+		Collection hosts = traySettings.getHosts();
+		Set hostStrings = new HashSet();
+		for (Iterator iterator = hosts.iterator(); iterator.hasNext();) {
+			Host host = (Host) iterator.next();
+			hostStrings.add(host.getHostString());
+			ScheduledHost scheduledHost = (ScheduledHost) scheduled.get(host.getHostString());
+			if (scheduledHost == null) {
+				scheduledHost = new ScheduledHost(host, now, sequence++);
+				scheduledHost.queued = true;
+				scheduled.put(host.getHostString(), scheduledHost);
+				queue.add(scheduledHost);
+			} else {
+				scheduledHost.host = host;
+			}
+		}
+
+		for (Iterator iterator = scheduled.entrySet().iterator(); iterator.hasNext();) {
+			Map.Entry entry = (Map.Entry) iterator.next();
+			if (!hostStrings.contains(entry.getKey())) {
+				ScheduledHost scheduledHost = (ScheduledHost) entry.getValue();
+				if (scheduledHost.queued)
+					queue.remove(scheduledHost);
+				iterator.remove();
+			}
+		}
+	}
+}
@@ -0,0 +1,416 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Fetches the project lists of several {@link Host}s at once. Every host is
+ * fetched as a separate task, so a slow or dead host only ever ties up its own
+ * thread and never delays the results of the other hosts. Depending on the
+ * {@link ExecutionMode}, the tasks run on a bounded pool of platform threads or
+ * each on a new virtual thread. Hosts that do not answer before the
+ * deadlines are reported as late rather than holding back the others.
+ * 
+ * @see ISettingsConstants#POLL_THREADS
+ */
+public class PollingEngine {
+
+	private static final Logger	log	= Logger.getLogger(PollingEngine.class);
+
+	private static final class PollTask implements Callable {
+		private final Host	host;
+
+		private PollTask(Host host) {
+			this.host = host;
+		}
+
+		public Object call() {
+			long start = System.currentTimeMillis();
+			try {
+				DashBoardProjects projects = host.getConfiguredCruiseProjects();
+				return new PollResult(host, projects, System.currentTimeMillis() - start);
+			} catch (Exception e) {
+				return new PollResult(host, e, System.currentTimeMillis() - start);
+			}
+		}
+	}
+
+	/**
+	 * A poll that hands itself to the queue of the call that started it when
+	 * it starts running, so that its deadline can be set, and again when it
+	 * is done and stops being in flight. A poll that was reported late hands
+	 * itself to {@link PollingEngine#lateResults} once it is done instead.
+	 */
+	private final class PollFuture extends FutureTask {
+		private final PollTask		task;
+		private final BlockingQueue	completed;
+		private volatile long		startTime;
+		private boolean				late;
+		private boolean				finished;
+
+		private PollFuture(PollTask task, BlockingQueue completed) {
+			super(task);
+			this.task = task;
+			this.completed = completed;
+		}
+
+		public void run() {
+			startTime = System.currentTimeMillis();
+			completed.add(this);
+			activePolls.incrementAndGet();
+			try {
+				super.run();
+			} finally {
+				activePolls.decrementAndGet();
+			}
+		}
+
+		protected void done() {
+			synchronized (inFlight) {
+				if (inFlight.get(task.host) == this)
+					inFlight.remove(task.host);
+			}
+			synchronized (this) {
+				finished = true;
+				if (late && !isCancelled())
+					lateResults.add(this);
+			}
+			completed.add(this);
+		}
+
+		/**
+		 * Marks the poll as reported late, its result is published by
+		 * {@link PollingEngine#publishLateResults(IPollListener)} once it is
+		 * done.
+		 */
+		private synchronized void markLate() {
+			late = true;
+			if (finished && !isCancelled())
+				lateResults.add(this);
+		}
+
+		/**
+		 * @return the time the poll started running, or <code>0</code> if it
+		 *         is still queued.
+		 */
+		private long getStartTime() {
+			return startTime;
+		}
+	}
+
+	private static final String			THREAD_NAME_PREFIX	= "HostPoller-";
+
+	private ExecutorService				executor;
+	private ExecutionMode				executionMode		= ExecutionMode.PLATFORM;
+	private final AtomicInteger			activePolls			= new AtomicInteger();
+	private int							maxConcurrentPolls;
+	private volatile long				pollDeadline;
+	private volatile long				hostDeadline;
+	private volatile boolean			cancelLatePolls;
+	/** The polls that have not finished, by {@link Host}. */
+	private final Map					inFlight			= new HashMap();
+	/** The late polls that have finished, and are not published yet. */
+	private final BlockingQueue			lateResults			= new LinkedBlockingQueue();
+
+	public PollingEngine(int maxConcurrentPolls) {
+		this.maxConcurrentPolls = Math.max(1, maxConcurrentPolls);
+		this.executor = executionMode.newExecutor(THREAD_NAME_PREFIX, this.maxConcurrentPolls);
+	}
+
+	/**
+	 * Changes how hosts are polled. In the {@link ExecutionMode#VIRTUAL} mode
+	 * every host is polled on a new virtual thread, and the maximum number of
+	 * concurrent polls is ignored. Falls back to
+	 * {@link ExecutionMode#PLATFORM} if virtual threads are not available.
+	 * Polls that are already running are not affected.
+	 */
+	public synchronized void setExecutionMode(ExecutionMode executionMode) {
+		executionMode = executionMode.availableMode();
+		if (executionMode == this.executionMode)
+			return;
+		this.executionMode = executionMode;
+		replaceExecutor();
+	}
+
+	public synchronized ExecutionMode getExecutionMode() {
+		return executionMode;
+	}
+
+	/**
+	 * Changes the maximum number of hosts that are fetched at the same time.
+	 * Polls that are already running are not affected.
+	 */
+	public synchronized void setMaxConcurrentPolls(int maxConcurrentPolls) {
+		maxConcurrentPolls = Math.max(1, maxConcurrentPolls);
+		if (maxConcurrentPolls == this.maxConcurrentPolls)
+			return;
+		this.maxConcurrentPolls = maxConcurrentPolls;
+		if (executionMode == ExecutionMode.PLATFORM)
+			replaceExecutor();
+	}
+
+	/**
+	 * Polls are submitted to a new executor, the old one is shut down once
+	 * its polls are done.
+	 */
+	private void replaceExecutor() {
+		executor.shutdown();
+		executor = executionMode.newExecutor(THREAD_NAME_PREFIX, maxConcurrentPolls);
+	}
+
+	/**
+	 * @return the maximum number of hosts that are fetched at the same time,
+	 *         {@link Integer#MAX_VALUE} with virtual threads.
+	 */
+	public synchronized int getMaxConcurrentPolls() {
+		if (executionMode == ExecutionMode.VIRTUAL)
+			return Integer.MAX_VALUE;
+		return maxConcurrentPolls;
+	}
+
+	/**
+	 * Sets how long {@link #poll(Collection, IPollListener)} waits for the
+	 * hosts. Hosts that have not answered in time are reported as late, see
+	 * {@link PollResult#isLate()}.
+	 * 
+	 * @param pollDeadline
+	 *            the time in ms to wait for all the hosts, or <code>0</code>
+	 *            to wait as long as it takes.
+	 * @param hostDeadline
+	 *            the time in ms to wait for a host once its poll started, or
+	 *            <code>0</code> to wait as long as it takes.
+	 * @param cancelLatePolls
+	 *            whether the polls of late hosts are cancelled, or are left
+	 *            to finish in the background. A host is not polled again
+	 *            before its earlier poll has finished, it is late right
+	 *            away. The results of the polls that finish in the
+	 *            background are published later, see
+	 *            {@link #publishLateResults(IPollListener)}.
+	 */
+	public void setDeadlines(long pollDeadline, long hostDeadline, boolean cancelLatePolls) {
+		this.pollDeadline = pollDeadline;
+		this.hostDeadline = hostDeadline;
+		this.cancelLatePolls = cancelLatePolls;
+	}
+
+	/**
+	 * @return the number of hosts being polled right now.
+	 */
+	public int getActivePolls() {
+		return activePolls.get();
+	}
+
+	/**
+	 * Fetches the projects of all the given hosts concurrently and waits for
+	 * all of them to complete.
+	 * 
+	 * @param hosts
+	 *            the {@link Host}s to fetch.
+	 * @return a map of {@link Host} to {@link PollResult}, in the iteration
+	 *         order of <code>hosts</code>.
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting.
+	 */
+	public Map poll(Collection hosts) throws InterruptedException {
+		return poll(hosts, null);
+	}
+
+	/**
+	 * Fetches the projects of all the given hosts concurrently, hands every
+	 * result to the listener as soon as it arrives, and waits for all of them
+	 * to complete. The results of the late polls that have finished since are
+	 * handed to the listener first.
+	 * 
+	 * @param listener
+	 *            notified of each result, or <code>null</code>.
+	 * @return a map of {@link Host} to {@link PollResult}, in the iteration
+	 *         order of <code>hosts</code>.
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting, the
+	 *             polls that are still running are then cancelled.
+	 */
+	public Map poll(Collection hosts, IPollListener listener) throws InterruptedException {
+		publishLateResults(listener);
+		long start = System.currentTimeMillis();
+		long pollDeadline = this.pollDeadline;
+		long hostDeadline = this.hostDeadline;
+		BlockingQueue completed = new LinkedBlockingQueue();
+		Set pending = new HashSet();
+		Map results = new LinkedHashMap();
+		List lateHosts = new ArrayList();
+		for (Iterator iterator = hosts.iterator(); iterator.hasNext();) {
+			Host host = (Host) iterator.next();
+			results.put(host, null);
+			PollFuture future = submit(host, completed);
+			if (future == null)
+				lateHosts.add(host);
+			else
+				pending.add(future);
+		}
+		for (Iterator iterator = lateHosts.iterator(); iterator.hasNext();)
+			publish(PollResult.late((Host) iterator.next(), 0), results, listener);
+
+		try {
+			while (!pending.isEmpty()) {
+				long now = System.currentTimeMillis();
+				long deadline = nextDeadline(pending, start, pollDeadline, hostDeadline);
+				PollFuture future = (PollFuture) (deadline == Long.MAX_VALUE ? completed.take() : completed.poll(
+						Math.max(0, deadline - now), TimeUnit.MILLISECONDS));
+				if (future == null)
+					expire(pending, System.currentTimeMillis(), start, pollDeadline, hostDeadline, results, listener);
+				else if (future.isDone() && pending.remove(future))
+					publish(waitForResult(future.task.host, future), results, listener);
+			}
+		} catch (InterruptedException e) {
+			cancel(pending);
+			throw e;
+		}
+		return results;
+	}
+
+	/**
+	 * @return the poll of the given host, or <code>null</code> if the host
+	 *         is still being polled.
+	 */
+	private PollFuture submit(Host host, BlockingQueue completed) {
+		PollFuture future = new PollFuture(new PollTask(host), completed);
+		synchronized (inFlight) {
+			if (inFlight.containsKey(host))
+				return null;
+			inFlight.put(host, future);
+		}
+		synchronized (this) {
+			executor.execute(future);
+		}
+		return future;
+	}
+
+	/**
+	 * @return the earliest time at which a pending poll is late, or
+	 *         {@link Long#MAX_VALUE} if there are no deadlines.
+	 */
+	private long nextDeadline(Collection pending, long start, long pollDeadline, long hostDeadline) {
+		long deadline = pollDeadline > 0 ? start + pollDeadline : Long.MAX_VALUE;
+		if (hostDeadline > 0) {
+			for (Iterator iterator = pending.iterator(); iterator.hasNext();) {
+				long startTime = ((PollFuture) iterator.next()).getStartTime();
+				if (startTime > 0)
+					deadline = Math.min(deadline, startTime + hostDeadline);
+			}
+		}
+		return deadline;
+	}
+
+	/**
+	 * Reports the hosts that missed their deadline as late, and lets their
+	 * polls finish or cancels them.
+	 */
+	private void expire(Set pending, long now, long start, long pollDeadline, long hostDeadline, Map results,
+			IPollListener listener) {
+		boolean pollExpired = pollDeadline > 0 && now >= start + pollDeadline;
+		for (Iterator iterator = pending.iterator(); iterator.hasNext();) {
+			PollFuture future = (PollFuture) iterator.next();
+			long startTime = future.getStartTime();
+			if (pollExpired || (hostDeadline > 0 && startTime > 0 && now >= startTime + hostDeadline)) {
+				iterator.remove();
+				if (cancelLatePolls)
+					future.cancel(true);
+				else
+					future.markLate();
+				publish(PollResult.late(future.task.host, now - (startTime > 0 ? startTime : start)), results, listener);
+			}
+		}
+	}
+
+	/**
+	 * Hands the results of the polls that were reported late, and have
+	 * finished in the background since, to the listener in the calling
+	 * thread. A late poll that failed still counts as a failure of its host.
+	 * 
+	 * @param listener
+	 *            notified of each result, or <code>null</code> to drop them.
+	 */
+	public void publishLateResults(IPollListener listener) throws InterruptedException {
+		PollFuture future;
+		while ((future = (PollFuture) lateResults.poll()) != null) {
+			if (listener != null)
+				notifyListener(listener, waitForResult(future.task.host, future));
+		}
+	}
+
+	private void publish(PollResult result, Map results, IPollListener listener) {
+		results.put(result.getHost(), result);
+		if (listener != null)
+			notifyListener(listener, result);
+	}
+
+	/**
+	 * Interrupts the polls that are still running, no poll outlives the call
+	 * that started it, unless it is late.
+	 */
+	private void cancel(Collection futures) {
+		for (Iterator iterator = futures.iterator(); iterator.hasNext();)
+			((Future) iterator.next()).cancel(true);
+	}
+
+	private void notifyListener(IPollListener listener, PollResult result) {
+		try {
+			listener.hostPolled(result);
+		} catch (RuntimeException e) {
+			log.error("Could not notify " + listener + " of the result of " + result.getHost(), e);
+		}
+	}
+
+	private PollResult waitForResult(Host host, Future future) throws InterruptedException {
+		try {
+			return (PollResult) future.get();
+		} catch (CancellationException e) {
+			return PollResult.late(host, 0);
+		} catch (ExecutionException e) {
+			log.error("Unexpected error polling host: " + host, e.getCause());
+			return new PollResult(host, new Exception(e.getCause()), 0);
+		}
+	}
+
+	/**
+	 * Stops all the worker threads. Polls that are still running are
+	 * interrupted.
+	 */
+	public synchronized void shutdown() {
+		executor.shutdownNow();
+	}
+}
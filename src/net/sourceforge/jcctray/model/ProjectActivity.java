@@ -0,0 +1,96 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The activity of a {@link DashBoardProject}, as reported by the server.
+ * There is a single instance of each activity defined here, so they can be
+ * compared by identity. Other activities are not shared: every project gets
+ * an instance of its own, that keeps the name sent by the server and is
+ * not {@link #isDefined() defined}. Compare them with {@link #equals(Object)}.
+ */
+public final class ProjectActivity {
+
+	private static final Map			known					= new HashMap();
+
+	public static final ProjectActivity	SLEEPING				= define("Sleeping");
+	public static final ProjectActivity	BUILDING				= define("Building");
+	public static final ProjectActivity	CHECKING_MODIFICATIONS	= define("CheckingModifications");
+	public static final ProjectActivity	PENDING					= define("Pending");
+
+	private final String				name;
+	private final boolean				defined;
+
+	private ProjectActivity(String name, boolean defined) {
+		this.name = name;
+		this.defined = defined;
+	}
+
+	private static ProjectActivity define(String name) {
+		ProjectActivity activity = new ProjectActivity(name, true);
+		known.put(name, activity);
+		return activity;
+	}
+
+	/**
+	 * @return the activity with the given name, or <code>null</code> if the
+	 *         name is <code>null</code>.
+	 */
+	public static ProjectActivity valueOf(String name) {
+		if (name == null)
+			return null;
+		ProjectActivity activity = (ProjectActivity) known.get(name);
+		return activity != null ? activity : new ProjectActivity(name, false);
+	}
+
+	/**
+	 * @return <code>true</code> if the project is building or checking for
+	 *         modifications.
+	 */
+	public boolean isActive() {
+		return this == BUILDING || this == CHECKING_MODIFICATIONS;
+	}
+
+	/**
+	 * @return <code>true</code> if this activity is one of the constants
+	 *         defined here.
+	 */
+	public boolean isDefined() {
+		return defined;
+	}
+
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof ProjectActivity))
+			return false;
+		return name.equals(((ProjectActivity) obj).name);
+	}
+
+	public int hashCode() {
+		return name.hashCode();
+	}
+
+	/**
+	 * @return the name of the activity, as reported by the server.
+	 */
+	public String toString() {
+		return name;
+	}
+}
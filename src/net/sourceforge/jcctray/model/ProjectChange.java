@@ -0,0 +1,115 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+/**
+ * Describes how a single project changed between two consecutive project
+ * lists.
+ * 
+ * @see ProjectsDelta
+ */
+public class ProjectChange {
+
+	/** The project was not in the previous list. */
+	public static final int					ADDED		= 1;
+	/** The project is not in the new list. */
+	public static final int					REMOVED		= 2;
+	/** The activity of the project changed, e.g. it started building. */
+	public static final int					ACTIVITY	= 4;
+	/** The status of the last build of the project changed. */
+	public static final int					STATUS		= 8;
+	/** The label of the last build of the project changed. */
+	public static final int					LABEL		= 16;
+	/** Any other attribute of the project changed, e.g. its build times. */
+	public static final int					DETAILS		= 32;
+
+	private final DashBoardProject			project;
+	private final DashBoardProject			oldProject;
+	private final int						kind;
+
+	public ProjectChange(DashBoardProject project, DashBoardProject oldProject, int kind) {
+		this.project = project;
+		this.oldProject = oldProject;
+		this.kind = kind;
+	}
+
+	/**
+	 * @return the project as it is now, or the project that was removed.
+	 */
+	public DashBoardProject getProject() {
+		return project;
+	}
+
+	/**
+	 * @return the project as it was, or <code>null</code> if it was added.
+	 */
+	public DashBoardProject getOldProject() {
+		return oldProject;
+	}
+
+	/**
+	 * @return a combination of {@link #ADDED}, {@link #REMOVED},
+	 *         {@link #ACTIVITY}, {@link #STATUS}, {@link #LABEL} and
+	 *         {@link #DETAILS}.
+	 */
+	public int getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return whether this change is of any of the given kinds.
+	 */
+	public boolean is(int kinds) {
+		return (kind & kinds) != 0;
+	}
+
+	public boolean isAdded() {
+		return is(ADDED);
+	}
+
+	public boolean isRemoved() {
+		return is(REMOVED);
+	}
+
+	public boolean isActivityChanged() {
+		return is(ACTIVITY);
+	}
+
+	public boolean isStatusChanged() {
+		return is(STATUS);
+	}
+
+	public boolean isLabelChanged() {
+		return is(LABEL);
+	}
+
+	public String toString() {
+		StringBuffer buffer = new StringBuffer(project.getName()).append(":");
+		if (isAdded())
+			buffer.append(" added");
+		if (isRemoved())
+			buffer.append(" removed");
+		if (isActivityChanged())
+			buffer.append(" activity");
+		if (isStatusChanged())
+			buffer.append(" status");
+		if (isLabelChanged())
+			buffer.append(" label");
+		if (is(DETAILS))
+			buffer.append(" details");
+		return buffer.toString();
+	}
+}
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import net.sourceforge.jcctray.utils.DateEngine;
+import net.sourceforge.jcctray.utils.StringUtils;
+
+/**
+ * The text and icon shown for a {@link DashBoardProject} in the project
+ * table. Dates are formatted when the row is created, from the times parsed
+ * by the project, so that showing the row again is only a matter of
+ * returning its fields. Times that could not be parsed are formatted by the
+ * cruise of the project.
+ * <p>
+ * Rows cannot be changed. The row of a snapshot project is created with the
+ * snapshot, that is once for every change of the project.
+ * 
+ * @see DashBoardProject#getRow()
+ */
+public final class ProjectRow {
+
+	public static final String	WAITING_FOR_BUILD	= "Waiting for next build to happen";
+	public static final String	NEXT_BUILD_PREFIX	= "Next build check at: ";
+
+	/** The name of the icon of a project, one of the icons in <code>icons/</code>. */
+	public static final String	GRAY				= "Gray";
+	public static final String	GREEN				= "Green";
+	public static final String	ORANGE				= "Orange";
+	public static final String	RED					= "Red";
+	public static final String	YELLOW				= "Yellow";
+
+	private final String		name;
+	private final String		hostText;
+	private final String		activity;
+	private final String		nextBuildText;
+	private final String		lastBuildLabel;
+	private final String		lastBuildText;
+	private final String		icon;
+
+	private ProjectRow(DashBoardProject project) {
+		Host host = project.getHost();
+		ICruise cruise = host == null ? null : host.getCruise();
+		this.name = project.getName();
+		this.hostText = host == null ? "" : host.getHostString();
+		this.activity = project.getActivity();
+		this.nextBuildText = nextBuildText(formatDate(project.getNextBuildMillis(), project.getNextBuildTime(),
+				cruise));
+		this.lastBuildLabel = project.getLastBuildLabel();
+		this.lastBuildText = lastBuildText(formatDate(project.getLastBuildMillis(), project.getLastBuildTime(),
+				cruise));
+		this.icon = icon(project.getProjectActivity(), project.getBuildStatus());
+	}
+
+	/**
+	 * @return a new row showing the current state of the given project.
+	 */
+	public static ProjectRow of(DashBoardProject project) {
+		return new ProjectRow(project);
+	}
+
+	private static String formatDate(long time, String timestamp, ICruise cruise) {
+		if (time != DateEngine.UNPARSEABLE)
+			return DateEngine.format(time, null);
+		if (StringUtils.isEmptyOrNull(timestamp))
+			return null;
+		return cruise == null ? timestamp : cruise.formatDate(timestamp, null);
+	}
+
+	private static String nextBuildText(String formattedDate) {
+		if (StringUtils.isEmptyOrNull(formattedDate))
+			return WAITING_FOR_BUILD;
+		return NEXT_BUILD_PREFIX + formattedDate;
+	}
+
+	private static String lastBuildText(String formattedDate) {
+		return formattedDate == null ? "" : formattedDate;
+	}
+
+	private static String icon(ProjectActivity activity, BuildStatus lastBuildStatus) {
+		boolean building = activity == ProjectActivity.BUILDING;
+		if (lastBuildStatus == BuildStatus.SUCCESS)
+			return building ? YELLOW : GREEN;
+		if (lastBuildStatus == BuildStatus.FAILURE)
+			return building ? ORANGE : RED;
+		return building ? YELLOW : GRAY;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the host string of the project, without its health, which
+	 *         changes independently of the project.
+	 */
+	public String getHostText() {
+		return hostText;
+	}
+
+	public String getActivity() {
+		return activity;
+	}
+
+	public String getNextBuildText() {
+		return nextBuildText;
+	}
+
+	public String getLastBuildLabel() {
+		return lastBuildLabel;
+	}
+
+	public String getLastBuildText() {
+		return lastBuildText;
+	}
+
+	/**
+	 * @return one of {@link #GRAY}, {@link #GREEN}, {@link #ORANGE},
+	 *         {@link #RED} or {@link #YELLOW}.
+	 */
+	public String getIcon() {
+		return icon;
+	}
+
+	public String toString() {
+		return name + " - " + activity + " - " + icon;
+	}
+}
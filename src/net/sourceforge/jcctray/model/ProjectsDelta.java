@@ -0,0 +1,126 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The differences between two consecutive lists of projects, as a list of
+ * {@link ProjectChange}s. Projects are matched by name and host.
+ * 
+ * @see ProjectsModel
+ */
+public class ProjectsDelta {
+
+	private final DashBoardProjects	oldProjects;
+	private final DashBoardProjects	projects;
+	private final List				changes;
+	private final int				kinds;
+
+	private ProjectsDelta(DashBoardProjects oldProjects, DashBoardProjects projects, List changes) {
+		this.oldProjects = oldProjects;
+		this.projects = projects;
+		this.changes = Collections.unmodifiableList(changes);
+		int kinds = 0;
+		for (Iterator iterator = changes.iterator(); iterator.hasNext();)
+			kinds |= ((ProjectChange) iterator.next()).getKind();
+		this.kinds = kinds;
+	}
+
+	/**
+	 * Computes the changes from one list of projects to the next.
+	 * 
+	 * @param oldProjects
+	 *            the previous projects, or <code>null</code> if there were
+	 *            none.
+	 * @param projects
+	 *            the new projects.
+	 */
+	public static ProjectsDelta compute(DashBoardProjects oldProjects, DashBoardProjects projects) {
+		List changes = new ArrayList();
+		for (Iterator iterator = projects.iterator(); iterator.hasNext();) {
+			DashBoardProject project = (DashBoardProject) iterator.next();
+			DashBoardProject oldProject = oldProjects == null ? null : oldProjects.get(project);
+			int kind = oldProject == null ? ProjectChange.ADDED : compare(oldProject, project);
+			if (kind != 0)
+				changes.add(new ProjectChange(project, oldProject, kind));
+		}
+		if (oldProjects != null) {
+			for (Iterator iterator = oldProjects.iterator(); iterator.hasNext();) {
+				DashBoardProject oldProject = (DashBoardProject) iterator.next();
+				if (projects.get(oldProject) == null)
+					changes.add(new ProjectChange(oldProject, oldProject, ProjectChange.REMOVED));
+			}
+		}
+		return new ProjectsDelta(oldProjects, projects, changes);
+	}
+
+	private static int compare(DashBoardProject oldProject, DashBoardProject project) {
+		if (oldProject == project || oldProject.hasSameStatus(project))
+			return 0;
+		int kind = 0;
+		if (!equal(oldProject.getProjectActivity(), project.getProjectActivity()))
+			kind |= ProjectChange.ACTIVITY;
+		if (!equal(oldProject.getBuildStatus(), project.getBuildStatus()))
+			kind |= ProjectChange.STATUS;
+		if (!equal(oldProject.getLastBuildLabel(), project.getLastBuildLabel()))
+			kind |= ProjectChange.LABEL;
+		return kind == 0 ? ProjectChange.DETAILS : kind;
+	}
+
+	private static boolean equal(Object value, Object otherValue) {
+		return value == null ? otherValue == null : value.equals(otherValue);
+	}
+
+	/**
+	 * @return the previous projects, or <code>null</code> if this is the
+	 *         first list of projects.
+	 */
+	public DashBoardProjects getOldProjects() {
+		return oldProjects;
+	}
+
+	public DashBoardProjects getProjects() {
+		return projects;
+	}
+
+	/**
+	 * @return the {@link ProjectChange}s, changed and added projects first,
+	 *         in the order of the new list, followed by the removed projects.
+	 */
+	public List getChanges() {
+		return changes;
+	}
+
+	public boolean isEmpty() {
+		return changes.isEmpty();
+	}
+
+	/**
+	 * @return whether any of the changes is of any of the given kinds.
+	 * @see ProjectChange#is(int)
+	 */
+	public boolean hasChanges(int kinds) {
+		return (this.kinds & kinds) != 0;
+	}
+
+	public String toString() {
+		return "Changes - " + changes;
+	}
+}
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Publishes the latest {@link ProjectsSnapshot}, and tells the registered
+ * {@link IProjectsListener}s what changed every time it is updated.
+ * <p>
+ * The snapshot is published through an atomic reference, so readers never
+ * lock and never see a partial update.
+ */
+public class ProjectsModel {
+
+	private static final Logger		log			= Logger.getLogger(ProjectsModel.class);
+
+	private final List				listeners	= new CopyOnWriteArrayList();
+	private final AtomicReference	snapshot	= new AtomicReference();
+
+	public void addListener(IProjectsListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(IProjectsListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * @return the latest snapshot, or <code>null</code> if the model was
+	 *         never updated.
+	 */
+	public ProjectsSnapshot getSnapshot() {
+		return (ProjectsSnapshot) snapshot.get();
+	}
+
+	/**
+	 * @return the latest projects, or <code>null</code> if the model was
+	 *         never updated.
+	 */
+	public DashBoardProjects getProjects() {
+		ProjectsSnapshot current = getSnapshot();
+		return current == null ? null : current.getProjects();
+	}
+
+	/**
+	 * Publishes a snapshot of the given projects, and notifies the listeners.
+	 * Nothing is published when nothing changed.
+	 * 
+	 * @return the changes.
+	 */
+	public ProjectsDelta update(DashBoardProjects newProjects) {
+		ProjectsSnapshot current;
+		ProjectsSnapshot next;
+		ProjectsDelta delta;
+		do {
+			current = getSnapshot();
+			next = ProjectsSnapshot.next(current, newProjects);
+			delta = ProjectsDelta.compute(current == null ? null : current.getProjects(), next.getProjects());
+			if (current != null && delta.isEmpty())
+				return delta;
+		} while (!snapshot.compareAndSet(current, next));
+
+		notifyListeners(delta);
+		return delta;
+	}
+
+	/**
+	 * Publishes a snapshot in which the projects of the given host are
+	 * replaced by the given ones, and notifies the listeners. The projects of
+	 * the other hosts are left as they are. Nothing is published when nothing
+	 * changed.
+	 * 
+	 * @param hostProjects
+	 *            all the projects of the host, those that are not given are
+	 *            removed.
+	 * @return the changes.
+	 */
+	public ProjectsDelta update(String hostString, DashBoardProjects hostProjects) {
+		ProjectsSnapshot current;
+		ProjectsSnapshot next;
+		ProjectsDelta delta;
+		do {
+			current = getSnapshot();
+			next = ProjectsSnapshot.next(current, hostString, hostProjects);
+			delta = ProjectsDelta.compute(current == null ? null : current.getProjects(), next.getProjects());
+			if (current != null && delta.isEmpty())
+				return delta;
+		} while (!snapshot.compareAndSet(current, next));
+
+		notifyListeners(delta);
+		return delta;
+	}
+
+	private void notifyListeners(ProjectsDelta delta) {
+		if (delta.isEmpty())
+			return;
+		for (Iterator iterator = listeners.iterator(); iterator.hasNext();) {
+			IProjectsListener listener = (IProjectsListener) iterator.next();
+			try {
+				listener.projectsChanged(delta);
+			} catch (RuntimeException e) {
+				log.error("Could not notify " + listener + " of " + delta, e);
+			}
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.Iterator;
+
+/**
+ * An immutable, versioned list of projects, as published by a
+ * {@link ProjectsModel}. Neither the list nor its projects can be changed,
+ * so a snapshot can be read from any thread without locking.
+ */
+public final class ProjectsSnapshot {
+
+	private final long				version;
+	private final DashBoardProjects	projects;
+
+	private ProjectsSnapshot(long version, DashBoardProjects projects) {
+		this.version = version;
+		this.projects = projects;
+	}
+
+	/**
+	 * Takes a snapshot of the given projects. Projects whose status did not
+	 * change since the previous snapshot are shared with it, the others are
+	 * copied.
+	 * 
+	 * @param previous
+	 *            the previous snapshot, or <code>null</code> for the first.
+	 */
+	public static ProjectsSnapshot next(ProjectsSnapshot previous, DashBoardProjects projects) {
+		DashBoardProjects snapshot = new DashBoardProjects();
+		addSnapshots(previous, projects, snapshot);
+		return new ProjectsSnapshot(previous == null ? 1 : previous.version + 1, snapshot.freeze());
+	}
+
+	/**
+	 * Takes a snapshot of the previous projects, with the projects of the
+	 * given host replaced by the given ones. The projects of the other hosts
+	 * are shared with the previous snapshot as they are, and the projects of
+	 * the host take the place of the first of its previous projects.
+	 * 
+	 * @param previous
+	 *            the previous snapshot, or <code>null</code> for the first.
+	 */
+	public static ProjectsSnapshot next(ProjectsSnapshot previous, String hostString, DashBoardProjects hostProjects) {
+		if (previous == null)
+			return next(null, hostProjects);
+		DashBoardProjects snapshot = new DashBoardProjects();
+		boolean added = false;
+		for (Iterator iterator = previous.projects.iterator(); iterator.hasNext();) {
+			DashBoardProject project = (DashBoardProject) iterator.next();
+			if (!isOnHost(project, hostString))
+				snapshot.add(project);
+			else if (!added) {
+				addSnapshots(previous, hostProjects, snapshot);
+				added = true;
+			}
+		}
+		if (!added)
+			addSnapshots(previous, hostProjects, snapshot);
+		return new ProjectsSnapshot(previous.version + 1, snapshot.freeze());
+	}
+
+	private static void addSnapshots(ProjectsSnapshot previous, DashBoardProjects projects,
+			DashBoardProjects snapshot) {
+		for (Iterator iterator = projects.iterator(); iterator.hasNext();) {
+			DashBoardProject project = (DashBoardProject) iterator.next();
+			DashBoardProject previousProject = previous == null ? null : previous.projects.get(project);
+			if (previousProject != null && previousProject.hasSameStatus(project))
+				snapshot.add(previousProject);
+			else
+				snapshot.add(project.snapshot());
+		}
+	}
+
+	private static boolean isOnHost(DashBoardProject project, String hostString) {
+		Host host = project.getHost();
+		return host != null && hostString.equals(host.getHostString());
+	}
+
+	/**
+	 * @return the number of this snapshot, each snapshot is numbered one more
+	 *         than the previous one.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return the projects, which cannot be changed.
+	 */
+	public DashBoardProjects getProjects() {
+		return projects;
+	}
+
+	public String toString() {
+		return "Snapshot " + version + " - " + projects;
+	}
+}
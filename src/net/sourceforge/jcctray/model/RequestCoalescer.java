@@ -0,0 +1,296 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.httpclient.HttpClient;
+
+/**
+ * Makes a single request for the status report of hosts that share the same
+ * report url and credentials, like a server that is configured several times
+ * to group its projects.
+ * <p>
+ * A caller asking for a report that is already being fetched waits for that
+ * request rather than making its own, and between
+ * {@link #startCycle(Collection)} and {@link #endCycle()} a report is fetched
+ * at most once. The report is
+ * fetched with the projects asked for by all the hosts that share it, and
+ * every host gets the projects it asked for, as projects of its own.
+ */
+public class RequestCoalescer {
+
+	private static RequestCoalescer	instance;
+
+	private final class Fetch extends FutureTask {
+		private final Set	projectNames;
+		private final long	cycle;
+
+		private Fetch(final String url, final String cacheKey, final HttpClient client, final Set projectNames,
+				long cycle) {
+			super(new Callable() {
+				public Object call() throws Exception {
+					return DashboardXmlParser.getProjects(url, cacheKey, client, projectNames, cache);
+				}
+			});
+			this.projectNames = projectNames;
+			this.cycle = cycle;
+		}
+
+		/**
+		 * @return whether the projects fetched include the given ones.
+		 */
+		private boolean covers(Set projectNames) {
+			return this.projectNames == null || (projectNames != null && this.projectNames.containsAll(projectNames));
+		}
+
+		private DashBoardProjects getProjects() throws Exception {
+			try {
+				return (DashBoardProjects) get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof Exception)
+					throw (Exception) e.getCause();
+				throw (Error) e.getCause();
+			}
+		}
+	}
+
+	/** The host that was given a report as it is. */
+	private static final class Owner {
+		private final DashBoardProjects	source;
+		private final String			hostString;
+
+		private Owner(DashBoardProjects source, String hostString) {
+			this.source = source;
+			this.hostString = hostString;
+		}
+	}
+
+	/** The projects of a host, copied from a shared report. */
+	private static final class View {
+		private final DashBoardProjects	source;
+		private final Host				host;
+		private final Set				projectNames;
+		private final DashBoardProjects	projects;
+
+		private View(DashBoardProjects source, Host host, Set projectNames, DashBoardProjects projects) {
+			this.source = source;
+			this.host = host;
+			this.projectNames = projectNames;
+			this.projects = projects;
+		}
+	}
+
+	private final StatusReportCache	cache;
+	/** The requests being made, by key. */
+	private final Map				inFlight		= new HashMap();
+	/** The requests made in the current cycle, by key. */
+	private final Map				fetched			= new HashMap();
+	/** The projects asked for by each host, by host string, by key. */
+	private final Map				requestedNames	= new HashMap();
+	/** The host that owns the last report, by key, so that it is not copied for it. */
+	private final Map				owners			= new HashMap();
+	/** The copies made for each host, by host string. */
+	private final Map				views			= new HashMap();
+	private long					cycle;
+	private boolean					inCycle;
+
+	RequestCoalescer(StatusReportCache cache) {
+		this.cache = cache;
+	}
+
+	public static synchronized RequestCoalescer getInstance() {
+		if (instance == null)
+			instance = new RequestCoalescer(StatusReportCache.getInstance());
+		return instance;
+	}
+
+	/**
+	 * Starts a poll cycle, during which the reports fetched are shared with
+	 * all the hosts asking for them.
+	 * 
+	 * @param hosts
+	 *            the configured {@link Host}s, the reports are fetched with
+	 *            the projects of all the hosts sharing them.
+	 */
+	public synchronized void startCycle(Collection hosts) {
+		for (Iterator iterator = hosts.iterator(); iterator.hasNext();) {
+			Host host = (Host) iterator.next();
+			if (host.getCruise() instanceof HTTPCruise) {
+				String url = ((HTTPCruise) host.getCruise()).getXmlReportURL(host);
+				addRequestedNames(getKey(url, host), host, host.getConfiguredProjectNames());
+			}
+		}
+		inCycle = true;
+	}
+
+	public synchronized void endCycle() {
+		inCycle = false;
+		fetched.clear();
+		cycle++;
+	}
+
+	/**
+	 * Fetches the projects from the report at the given url, or waits for
+	 * another host that is fetching the same report.
+	 * 
+	 * @param client
+	 *            the client of the host, used if a request is made.
+	 * @param projectNames
+	 *            the names of the projects to read, or <code>null</code> to
+	 *            read all of them.
+	 * @return the projects of the given host. The same projects are returned
+	 *         as long as the report does not change.
+	 */
+	public DashBoardProjects getProjects(String url, HttpClient client, Host host, Set projectNames)
+			throws Exception {
+		String key = getKey(url, host);
+		Fetch fetch;
+		boolean requested = false;
+		synchronized (this) {
+			if (projectNames != null)
+				addRequestedNames(key, host, projectNames);
+			fetch = findFetch(key, projectNames);
+			if (fetch == null) {
+				fetch = new Fetch(url, getCacheKey(url, host), client, getFetchNames(key, projectNames), cycle);
+				inFlight.put(key, fetch);
+				requested = true;
+			}
+		}
+		if (requested) {
+			fetch.run();
+			synchronized (this) {
+				if (inFlight.get(key) == fetch)
+					inFlight.remove(key);
+				if (inCycle && fetch.cycle == cycle)
+					fetched.put(key, fetch);
+			}
+		}
+		return getView(key, fetch.getProjects(), fetch.projectNames, host, projectNames);
+	}
+
+	/**
+	 * Forgets the hosts that are no longer configured, along with the
+	 * projects copied for them.
+	 */
+	public synchronized void retainHosts(Collection hostStrings) {
+		for (Iterator iterator = requestedNames.values().iterator(); iterator.hasNext();) {
+			Map names = (Map) iterator.next();
+			names.keySet().retainAll(hostStrings);
+			if (names.isEmpty())
+				iterator.remove();
+		}
+		for (Iterator iterator = owners.values().iterator(); iterator.hasNext();) {
+			if (!hostStrings.contains(((Owner) iterator.next()).hostString))
+				iterator.remove();
+		}
+		views.keySet().retainAll(hostStrings);
+	}
+
+	/**
+	 * Requests are only shared by hosts with the same credentials, since
+	 * the server may show different projects to different users.
+	 */
+	private static String getKey(String url, Host host) {
+		return url + "\n" + host.getUsername() + "\n" + host.getPassword();
+	}
+
+	/**
+	 * The status report cache saves its keys, so the password is only part
+	 * of them as a digest.
+	 */
+	private static String getCacheKey(String url, Host host) {
+		return url + "\n" + host.getUsername() + "\n" + DigestUtils.md5Hex(String.valueOf(host.getPassword()));
+	}
+
+	private void addRequestedNames(String key, Host host, Set projectNames) {
+		Map names = (Map) requestedNames.get(key);
+		if (names == null) {
+			names = new HashMap();
+			requestedNames.put(key, names);
+		}
+		names.put(host.getHostString(), new HashSet(projectNames));
+	}
+
+	/**
+	 * @return the names of the projects asked for by all the hosts sharing
+	 *         the report, so that they can share a single request.
+	 */
+	private Set getFetchNames(String key, Set projectNames) {
+		if (projectNames == null)
+			return null;
+		Set fetchNames = new HashSet(projectNames);
+		for (Iterator iterator = ((Map) requestedNames.get(key)).values().iterator(); iterator.hasNext();)
+			fetchNames.addAll((Set) iterator.next());
+		return fetchNames;
+	}
+
+	private Fetch findFetch(String key, Set projectNames) {
+		Fetch fetch = (Fetch) inFlight.get(key);
+		if (fetch != null && fetch.covers(projectNames))
+			return fetch;
+		fetch = (Fetch) fetched.get(key);
+		if (fetch != null && fetch.covers(projectNames))
+			return fetch;
+		return null;
+	}
+
+	/**
+	 * The first host to get a report it asked for exactly gets the projects
+	 * as they are, the other hosts get copies of the projects they asked for.
+	 * Copies are kept until the report changes.
+	 */
+	private synchronized DashBoardProjects getView(String key, DashBoardProjects source, Set fetchNames, Host host,
+			Set projectNames) {
+		if (sameNames(fetchNames, projectNames)) {
+			Owner owner = (Owner) owners.get(key);
+			if (owner == null || owner.source != source) {
+				owner = new Owner(source, host.getHostString());
+				owners.put(key, owner);
+			}
+			if (owner.hostString.equals(host.getHostString())) {
+				source.setHost(host);
+				return source;
+			}
+		}
+		View view = (View) views.get(host.getHostString());
+		if (view != null && view.source == source && view.host == host
+				&& sameNames(view.projectNames, projectNames))
+			return view.projects;
+		DashBoardProjects projects = new DashBoardProjects();
+		for (Iterator iterator = source.iterator(); iterator.hasNext();) {
+			DashBoardProject project = (DashBoardProject) iterator.next();
+			if (projectNames == null || projectNames.contains(project.getName()))
+				projects.add(project.copy(host));
+		}
+		views.put(host.getHostString(), new View(source, host, projectNames == null ? null : new HashSet(
+				projectNames), projects));
+		return projects;
+	}
+
+	private static boolean sameNames(Set projectNames, Set otherNames) {
+		return projectNames == null ? otherNames == null : projectNames.equals(otherNames);
+	}
+}
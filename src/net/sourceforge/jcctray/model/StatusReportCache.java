@@ -0,0 +1,337 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import net.sourceforge.jcctray.utils.FileUtil;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.log4j.Logger;
+import org.xml.sax.SAXException;
+
+/**
+ * Remembers the <code>ETag</code> and <code>Last-Modified</code> validators
+ * of the status reports fetched by {@link DashboardXmlParser}, along with
+ * the projects parsed from them. When a server answers a conditional request
+ * with <code>304 Not Modified</code>, the cached projects are returned
+ * without downloading or parsing the report again.
+ * <p>
+ * The validators and the report bodies are saved in the
+ * <code>~/.jcctray/cache</code> directory, so that the first poll after a
+ * restart can be answered with a 304 as well.
+ * <p>
+ * Servers that do not send validators usually return the very same report
+ * on consecutive polls, so the digest of the last report fetched for every
+ * key is remembered in memory, and an identical report is not parsed again.
+ * <p>
+ * Reports are cached by a key chosen by the caller, that tells apart
+ * requests the server may answer differently, like those made with other
+ * credentials. The projects are remembered along with the names of the
+ * projects that were asked for, and are only returned to callers asking
+ * for the same names. Reports read for all the projects are kept apart from
+ * those read for some of them, so that callers asking for either do not
+ * replace each other's.
+ */
+public class StatusReportCache {
+
+	private static final Logger			log			= Logger.getLogger(StatusReportCache.class);
+	private static final String			INDEX_FILE	= "index.properties";
+
+	private static StatusReportCache	instance;
+
+	private static final class Entry {
+		private final String		key;
+		private final String		etag;
+		private final String		lastModified;
+		private Set					projectNames;
+		private DashBoardProjects	projects;
+
+		private Entry(String key, String etag, String lastModified, Set projectNames, DashBoardProjects projects) {
+			this.key = key;
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.projectNames = projectNames;
+			this.projects = projects;
+		}
+	}
+
+	private static final class Digest {
+		private final String			digest;
+		private final Set				projectNames;
+		private final DashBoardProjects	projects;
+
+		private Digest(String digest, Set projectNames, DashBoardProjects projects) {
+			this.digest = digest;
+			this.projectNames = projectNames;
+			this.projects = projects;
+		}
+	}
+
+	private final File					directory;
+	private final Map					entries		= new HashMap();
+	private final Map					digests		= new HashMap();
+
+	/**
+	 * @param directory
+	 *            the directory to save the cache to, or <code>null</code> to
+	 *            only keep it in memory.
+	 */
+	public StatusReportCache(File directory) {
+		this.directory = directory;
+		load();
+	}
+
+	public static StatusReportCache getInstance() {
+		synchronized (StatusReportCache.class) {
+			if (StatusReportCache.instance == null)
+				StatusReportCache.instance = new StatusReportCache(new File(FileUtil.getFileNameInUserHome("cache")));
+			return StatusReportCache.instance;
+		}
+	}
+
+	/**
+	 * Makes the given request conditional, if validators are known for the
+	 * key and names.
+	 * 
+	 * @return <code>true</code> if the request was made conditional.
+	 */
+	public synchronized boolean addValidators(String key, Set projectNames, HttpMethod method) {
+		Entry entry = (Entry) entries.get(entryKey(key, projectNames));
+		if (entry == null)
+			return false;
+		if (entry.etag != null)
+			method.setRequestHeader("If-None-Match", entry.etag);
+		if (entry.lastModified != null)
+			method.setRequestHeader("If-Modified-Since", entry.lastModified);
+		return true;
+	}
+
+	/**
+	 * @param projectNames
+	 *            the names of the projects asked for, <code>null</code> for
+	 *            all of them.
+	 * @return the projects last parsed for the given key, or
+	 *         <code>null</code> if they are not known.
+	 */
+	public synchronized DashBoardProjects getProjects(String key, Set projectNames) {
+		key = entryKey(key, projectNames);
+		Entry entry = (Entry) entries.get(key);
+		if (entry == null)
+			return null;
+		if (entry.projects == null || !sameNames(entry.projectNames, projectNames)) {
+			entry.projects = readBody(key, projectNames);
+			entry.projectNames = copy(projectNames);
+		}
+		if (entry.projects == null)
+			forget(key);
+		return entry.projects;
+	}
+
+	/**
+	 * @return the projects last parsed for the given key, if they were
+	 *         parsed from a report with the given digest, <code>null</code>
+	 *         otherwise.
+	 */
+	public synchronized DashBoardProjects getProjects(String key, String digest, Set projectNames) {
+		Digest last = (Digest) digests.get(entryKey(key, projectNames));
+		if (last == null || !last.digest.equals(digest) || !sameNames(last.projectNames, projectNames))
+			return null;
+		return last.projects;
+	}
+
+	/**
+	 * Remembers the validators and projects of a report that was just
+	 * downloaded. Reports without any validator are only remembered by their
+	 * digest, and are not saved. The index is only written again when the
+	 * report is new, or its validators or digest changed.
+	 * 
+	 * @param body
+	 *            the report, only written out if it changed.
+	 */
+	public synchronized void put(String key, String etag, String lastModified, String digest,
+			ByteArrayOutputStream body, Set projectNames, DashBoardProjects projects) {
+		key = entryKey(key, projectNames);
+		projectNames = copy(projectNames);
+		Digest last = (Digest) digests.put(key, new Digest(digest, projectNames, projects));
+		if (etag == null && lastModified == null) {
+			removeEntry(key);
+			return;
+		}
+		Entry entry = (Entry) entries.put(key, new Entry(key, etag, lastModified, projectNames, projects));
+		boolean changed = entry == null || last == null || !last.digest.equals(digest);
+		if (changed)
+			writeBody(key, body);
+		if (changed || !equal(entry.etag, etag) || !equal(entry.lastModified, lastModified))
+			save();
+	}
+
+	public synchronized void remove(String key, Set projectNames) {
+		forget(entryKey(key, projectNames));
+	}
+
+	private static String entryKey(String key, Set projectNames) {
+		return projectNames == null ? key + "\n*" : key;
+	}
+
+	private void forget(String key) {
+		digests.remove(key);
+		removeEntry(key);
+	}
+
+	private void removeEntry(String key) {
+		if (entries.remove(key) == null)
+			return;
+		if (directory != null)
+			bodyFile(key).delete();
+		save();
+	}
+
+	private static boolean equal(Object value, Object otherValue) {
+		return value == null ? otherValue == null : value.equals(otherValue);
+	}
+
+	private static boolean sameNames(Set projectNames, Set otherNames) {
+		return projectNames == null ? otherNames == null : projectNames.equals(otherNames);
+	}
+
+	private static Set copy(Set projectNames) {
+		return projectNames == null ? null : new HashSet(projectNames);
+	}
+
+	private DashBoardProjects readBody(String key, Set projectNames) {
+		if (directory == null)
+			return null;
+		File file = bodyFile(key);
+		if (!file.exists())
+			return null;
+		InputStream in = null;
+		try {
+			in = new FileInputStream(file);
+			return DashboardXmlParser.getProjects(in, projectNames);
+		} catch (IOException e) {
+			log.warn("Could not read cached status report for " + key, e);
+		} catch (SAXException e) {
+			log.warn("Could not parse cached status report for " + key, e);
+		} finally {
+			close(in);
+		}
+		return null;
+	}
+
+	private void writeBody(String key, ByteArrayOutputStream body) {
+		if (directory == null)
+			return;
+		OutputStream out = null;
+		try {
+			directory.mkdirs();
+			out = new FileOutputStream(bodyFile(key));
+			body.writeTo(out);
+		} catch (IOException e) {
+			log.warn("Could not cache status report for " + key, e);
+		} finally {
+			close(out);
+		}
+	}
+
+	private void load() {
+		if (directory == null)
+			return;
+		File indexFile = new File(directory, INDEX_FILE);
+		if (!indexFile.exists())
+			return;
+		Properties index = new Properties();
+		InputStream in = null;
+		try {
+			in = new FileInputStream(indexFile);
+			index.load(in);
+		} catch (IOException e) {
+			log.warn("Could not read the status report cache", e);
+			return;
+		} finally {
+			close(in);
+		}
+		for (Iterator iterator = index.keySet().iterator(); iterator.hasNext();) {
+			String property = (String) iterator.next();
+			if (!property.endsWith(".key"))
+				continue;
+			String prefix = property.substring(0, property.length() - ".key".length());
+			String key = index.getProperty(property);
+			entries.put(key, new Entry(key, index.getProperty(prefix + ".etag"), index.getProperty(prefix
+					+ ".lastModified"), null, null));
+		}
+	}
+
+	private void save() {
+		if (directory == null)
+			return;
+		Properties index = new Properties();
+		for (Iterator iterator = entries.values().iterator(); iterator.hasNext();) {
+			Entry entry = (Entry) iterator.next();
+			String prefix = DigestUtils.md5Hex(entry.key);
+			index.setProperty(prefix + ".key", entry.key);
+			if (entry.etag != null)
+				index.setProperty(prefix + ".etag", entry.etag);
+			if (entry.lastModified != null)
+				index.setProperty(prefix + ".lastModified", entry.lastModified);
+		}
+		OutputStream out = null;
+		try {
+			directory.mkdirs();
+			out = new FileOutputStream(new File(directory, INDEX_FILE));
+			index.store(out, "JCCTray status report cache");
+		} catch (IOException e) {
+			log.warn("Could not save the status report cache", e);
+		} finally {
+			close(out);
+		}
+	}
+
+	private File bodyFile(String key) {
+		return new File(directory, DigestUtils.md5Hex(key) + ".xml");
+	}
+
+	private static void close(InputStream in) {
+		try {
+			if (in != null)
+				in.close();
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+
+	private static void close(OutputStream out) {
+		try {
+			if (out != null)
+				out.close();
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+}
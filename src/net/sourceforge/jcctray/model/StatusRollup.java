@@ -0,0 +1,200 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Counts projects by state, overall, per host and per category. The counts
+ * are kept up to date from {@link ProjectsDelta}s, so only the projects that
+ * changed are looked at, and reading a count takes constant time.
+ * <p>
+ * A rollup is not thread safe, it is meant to be used from the UI thread.
+ * Subclasses choose which projects are counted by overriding
+ * {@link #isCounted(DashBoardProject)}.
+ */
+public class StatusRollup {
+
+	/**
+	 * The number of projects in each state, for all projects or for the
+	 * projects of a host or a category.
+	 */
+	public static final class Counts {
+		private int	total;
+		private int	green;
+		private int	yellow;
+		private int	orange;
+		private int	red;
+
+		private void add(String icon, int count) {
+			total += count;
+			if (icon == ProjectRow.GREEN)
+				green += count;
+			else if (icon == ProjectRow.YELLOW)
+				yellow += count;
+			else if (icon == ProjectRow.ORANGE)
+				orange += count;
+			else if (icon == ProjectRow.RED)
+				red += count;
+		}
+
+		public int getTotal() {
+			return total;
+		}
+
+		/**
+		 * @return the number of projects whose last build failed.
+		 */
+		public int getFailing() {
+			return red + orange;
+		}
+
+		public int getBuilding() {
+			return yellow + orange;
+		}
+
+		/**
+		 * @return the icon that sums up the projects, one of the
+		 *         {@link ProjectRow} icons: {@link ProjectRow#ORANGE} if a
+		 *         failed project is building, {@link ProjectRow#YELLOW} if
+		 *         another project is building, {@link ProjectRow#RED} if a
+		 *         project failed, and {@link ProjectRow#GREEN} otherwise.
+		 */
+		public String getIcon() {
+			if (orange > 0)
+				return ProjectRow.ORANGE;
+			if (yellow > 0)
+				return ProjectRow.YELLOW;
+			if (red > 0)
+				return ProjectRow.RED;
+			return ProjectRow.GREEN;
+		}
+
+		/**
+		 * @return a summary like <code>3 failing, 2 building of 87</code>.
+		 */
+		public String getSummary() {
+			return getFailing() + " failing, " + getBuilding() + " building of " + total;
+		}
+
+		public String toString() {
+			return getSummary();
+		}
+	}
+
+	private static final Counts	NONE		= new Counts();
+
+	private final Counts		overall		= new Counts();
+	private final Map			hosts		= new HashMap();
+	private final Map			categories	= new HashMap();
+	private final Map			counted		= new HashMap();
+
+	/**
+	 * Counts the given projects from scratch, for changes that do not show in
+	 * a delta, like a project being disabled.
+	 */
+	public void reset(DashBoardProjects projects) {
+		overall.total = overall.green = overall.yellow = overall.orange = overall.red = 0;
+		hosts.clear();
+		categories.clear();
+		counted.clear();
+		for (Iterator iterator = projects.iterator(); iterator.hasNext();)
+			add((DashBoardProject) iterator.next());
+	}
+
+	/**
+	 * Updates the counts with the changes of the projects.
+	 */
+	public void apply(ProjectsDelta delta) {
+		for (Iterator iterator = delta.getChanges().iterator(); iterator.hasNext();) {
+			ProjectChange change = (ProjectChange) iterator.next();
+			remove(change.getOldProject());
+			if (!change.isRemoved())
+				add(change.getProject());
+		}
+	}
+
+	private void add(DashBoardProject project) {
+		if (!isCounted(project))
+			return;
+		counted.put(project, project);
+		count(project, 1);
+	}
+
+	/**
+	 * Uncounts the project as it was counted, since its category or whether
+	 * it is counted may have changed since.
+	 */
+	private void remove(DashBoardProject project) {
+		DashBoardProject countedProject = project == null ? null : (DashBoardProject) counted.remove(project);
+		if (countedProject != null)
+			count(countedProject, -1);
+	}
+
+	private void count(DashBoardProject project, int count) {
+		String icon = project.getRow().getIcon();
+		overall.add(icon, count);
+		add(hosts, project.getHost().getHostString(), icon, count);
+		add(categories, project.getCategory() == null ? "" : project.getCategory(), icon, count);
+	}
+
+	private static void add(Map countsByKey, String key, String icon, int count) {
+		Counts counts = (Counts) countsByKey.get(key);
+		if (counts == null) {
+			counts = new Counts();
+			countsByKey.put(key, counts);
+		}
+		counts.add(icon, count);
+		if (counts.total == 0)
+			countsByKey.remove(key);
+	}
+
+	/**
+	 * @return whether the given project is counted, all projects are by
+	 *         default.
+	 */
+	protected boolean isCounted(DashBoardProject project) {
+		return true;
+	}
+
+	public Counts getOverall() {
+		return overall;
+	}
+
+	/**
+	 * @return the counts of the projects of the host with the given host
+	 *         string, all zero if there are none.
+	 */
+	public Counts getHost(String hostString) {
+		Counts counts = (Counts) hosts.get(hostString);
+		return counts == null ? NONE : counts;
+	}
+
+	/**
+	 * @return the counts of the projects in the given category, all zero if
+	 *         there are none.
+	 */
+	public Counts getCategory(String category) {
+		Counts counts = (Counts) categories.get(category);
+		return counts == null ? NONE : counts;
+	}
+
+	public String toString() {
+		return "Rollup - " + overall;
+	}
+}
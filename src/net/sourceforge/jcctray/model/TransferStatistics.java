@@ -0,0 +1,71 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+/**
+ * Keeps a running count of the bytes of status reports received on the wire,
+ * and of the XML they decompress to, to measure what compression saves.
+ */
+public class TransferStatistics {
+
+	private static TransferStatistics	instance;
+
+	private long						wireBytes;
+	private long						xmlBytes;
+	private long						fetches;
+
+	public static TransferStatistics getInstance() {
+		synchronized (TransferStatistics.class) {
+			if (TransferStatistics.instance == null)
+				TransferStatistics.instance = new TransferStatistics();
+			return TransferStatistics.instance;
+		}
+	}
+
+	public synchronized void record(long wireBytes, long xmlBytes) {
+		this.wireBytes += wireBytes;
+		this.xmlBytes += xmlBytes;
+		this.fetches++;
+	}
+
+	/**
+	 * @return the number of bytes received, possibly compressed.
+	 */
+	public synchronized long getWireBytes() {
+		return wireBytes;
+	}
+
+	/**
+	 * @return the number of bytes of XML, after decompression.
+	 */
+	public synchronized long getXmlBytes() {
+		return xmlBytes;
+	}
+
+	public synchronized long getFetches() {
+		return fetches;
+	}
+
+	public synchronized void reset() {
+		wireBytes = 0;
+		xmlBytes = 0;
+		fetches = 0;
+	}
+
+	public synchronized String toString() {
+		return fetches + " fetches, " + wireBytes + " bytes received, " + xmlBytes + " bytes of XML";
+	}
+}
@@ -15,19 +15,18 @@
  ******************************************************************************/
 package net.sourceforge.jcctray.ui;
 
+import net.sourceforge.jcctray.model.CruiseExecutor;
 import net.sourceforge.jcctray.model.DashBoardProject;
 import net.sourceforge.jcctray.model.IJCCTraySettings;
 import net.sourceforge.jcctray.model.JCCTraySettings;
 import net.sourceforge.jcctray.ui.settings.SettingsDialog;
-import net.sourceforge.jcctray.ui.settings.providers.EnabledProjectsFilter;
-import net.sourceforge.jcctray.ui.settings.providers.ProjectContentProvider;
+import net.sourceforge.jcctray.ui.settings.providers.LazyProjectContentProvider;
 import net.sourceforge.jcctray.ui.settings.providers.ProjectLabelProvider;
 
 import org.apache.log4j.Logger;
 import org.eclipse.jface.viewers.DoubleClickEvent;
 import org.eclipse.jface.viewers.IDoubleClickListener;
 import org.eclipse.jface.viewers.TableViewer;
-import org.eclipse.jface.viewers.ViewerFilter;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.events.SelectionListener;
@@ -134,10 +133,10 @@ public class JCCTray {
 		}
 	}
 
-	private final class ForceBuildBackgroundThread extends Thread {
+	private final class ForceBuildTask implements Runnable {
 		private final DashBoardProject	project;
 
-		private ForceBuildBackgroundThread(DashBoardProject project) {
+		private ForceBuildTask(DashBoardProject project) {
 			this.project = project;
 		}
 
@@ -164,7 +163,7 @@ public class JCCTray {
 				TableItem[] selection = table.getSelection();
 				final DashBoardProject project = (DashBoardProject) selection[0].getData();
 
-				new ForceBuildBackgroundThread(project).start();
+				CruiseExecutor.getInstance().execute(new ForceBuildTask(project));
 			}
 		}
 
@@ -276,7 +275,7 @@ public class JCCTray {
 	}
 
 	private void createTable() {
-		table = new Table(shell, SWT.FULL_SELECTION);
+		table = new Table(shell, SWT.FULL_SELECTION | SWT.VIRTUAL);
 		table.setLayoutData(new GridData(GridData.FILL_VERTICAL | GridData.FILL_HORIZONTAL));
 		table.setHeaderVisible(true);
 		table.setLinesVisible(false);
@@ -313,10 +312,11 @@ public class JCCTray {
 		tableColumn.setMoveable(true);
 		tableColumn.setText("Last Build Time");
 
+		// only the visible rows are created, the input only holds enabled projects
 		tableViewer = new TableViewer(table);
+		tableViewer.setUseHashlookup(true);
 		tableViewer.setLabelProvider(new ProjectLabelProvider());
-		tableViewer.setContentProvider(new ProjectContentProvider());
-		tableViewer.setFilters(new ViewerFilter[] { new EnabledProjectsFilter(traySettings) });
+		tableViewer.setContentProvider(new LazyProjectContentProvider(tableViewer));
 	}
 
 	private void createMenus() {
@@ -406,6 +406,8 @@ public class JCCTray {
 				display.sleep();
 		try {
 			runnable.shouldRun = false;
+			// stops a poll that is in progress, rather than waiting for it
+			thread.interrupt();
 			thread.join();
 		} catch (InterruptedException e) {
 			log.error("Interrupted when waiting on thread.", e);
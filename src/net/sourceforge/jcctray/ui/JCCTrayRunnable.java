@@ -15,23 +15,47 @@
  ******************************************************************************/
 package net.sourceforge.jcctray.ui;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import net.sourceforge.jcctray.model.BuildStatus;
+import net.sourceforge.jcctray.model.CircuitBreaker;
+import net.sourceforge.jcctray.model.CruiseExecutor;
 import net.sourceforge.jcctray.model.DashBoardProject;
 import net.sourceforge.jcctray.model.DashBoardProjects;
+import net.sourceforge.jcctray.model.ExecutionMode;
 import net.sourceforge.jcctray.model.Host;
+import net.sourceforge.jcctray.model.HttpClientPool;
 import net.sourceforge.jcctray.model.IJCCTraySettings;
+import net.sourceforge.jcctray.model.IPollListener;
+import net.sourceforge.jcctray.model.IProjectsListener;
 import net.sourceforge.jcctray.model.ISettingsConstants;
+import net.sourceforge.jcctray.model.PollPlanner;
+import net.sourceforge.jcctray.model.PollResult;
+import net.sourceforge.jcctray.model.PollScheduler;
+import net.sourceforge.jcctray.model.PollingEngine;
+import net.sourceforge.jcctray.model.ProjectActivity;
+import net.sourceforge.jcctray.model.ProjectChange;
+import net.sourceforge.jcctray.model.ProjectRow;
+import net.sourceforge.jcctray.model.ProjectsDelta;
+import net.sourceforge.jcctray.model.ProjectsModel;
+import net.sourceforge.jcctray.model.RequestCoalescer;
+import net.sourceforge.jcctray.model.StatusRollup;
 import net.sourceforge.jcctray.ui.settings.providers.EnabledProjectsFilter;
 import net.sourceforge.jcctray.ui.settings.providers.IProjectLabelConstants;
-import net.sourceforge.jcctray.ui.settings.providers.ProjectLabelProvider;
 import net.sourceforge.jcctray.utils.StringUtils;
 
 import org.apache.log4j.Logger;
 import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableItem;
 import org.eclipse.swt.widgets.TrayItem;
 
 /**
@@ -43,126 +67,449 @@ import org.eclipse.swt.widgets.TrayItem;
 public class JCCTrayRunnable implements Runnable {
 
 	private static final Logger		log			= Logger.getLogger(JCCTrayRunnable.class);
+	private static final long		MAX_IDLE_SLEEP	= 1000;
 	private TableViewer				tableViewer;
-	public boolean					shouldRun	= true;
+	public volatile boolean			shouldRun	= true;
 	private final TrayItem			trayItem;
 	private final IJCCTraySettings	traySettings;
 	private final JCCTray			tray;
+	private final PollingEngine		pollingEngine;
+	private final PollScheduler		pollScheduler;
+	private final PollPlanner		pollPlanner;
+	private final CircuitBreaker	circuitBreaker;
+	private final Map				latestProjects	= new HashMap();
+	private long					lastConfiguration	= -1;
+	/** Whether the first poll is over, only accessed in the polling thread. */
+	private boolean					polledAllHosts;
+	private final ProjectsModel		projectsModel	= new ProjectsModel();
+	private final ProjectsView		projectsView	= new ProjectsView();
+	private final EnabledProjectsFilter	enabledProjectsFilter;
 
 	public JCCTrayRunnable(TableViewer tableViewer, TrayItem trayItem, IJCCTraySettings traySettings, JCCTray tray) {
 		this.tableViewer = tableViewer;
 		this.trayItem = trayItem;
 		this.traySettings = traySettings;
 		this.tray = tray;
+		this.pollingEngine = new PollingEngine(traySettings.getInt(ISettingsConstants.POLL_THREADS));
+		this.pollScheduler = new PollScheduler(traySettings);
+		this.pollPlanner = new PollPlanner(traySettings);
+		this.circuitBreaker = new CircuitBreaker(traySettings);
+		this.enabledProjectsFilter = new EnabledProjectsFilter(traySettings);
+		this.projectsModel.addListener(projectsView);
 	}
 
 	public void run() {
-		while (shouldRun) {
-			try {
-				updateUI();
-				Thread.sleep(traySettings.getInt(ISettingsConstants.POLL_INTERVAL) * 1000);
-			} catch (Exception e) {
-				log.error("Exception waiting on the background thread that fetches project status", e);
+		try {
+			while (shouldRun) {
+				try {
+					updateUI();
+					Thread.sleep(timeToNextPoll());
+				} catch (InterruptedException e) {
+					// JCCTray is exiting
+					break;
+				} catch (Exception e) {
+					log.error("Exception waiting on the background thread that fetches project status", e);
+				}
 			}
+		} finally {
+			pollingEngine.shutdown();
+			CruiseExecutor.getInstance().shutdown();
+			HttpClientPool.getInstance().shutdown();
 		}
 	}
 
-	private void updateTrayIcon(DashBoardProjects projects) {
-		trayItem.setImage(deduceImageToSet(projects));
+	private void updateTrayIcon(StatusRollup.Counts counts) {
+		trayItem.setImage(deduceImageToSet(counts));
+		trayItem.setToolTipText(counts.getSummary());
 	}
-	
-	private Image deduceImageToSet(DashBoardProjects projects) {
-		DashBoardProject[] projectList = projects.toArray();
-		Image icon = IProjectLabelConstants.GREEN_IMG;
-		for (int i = 0; i < projectList.length; i++) {
-			DashBoardProject project = projectList[i];
-			boolean projectEnabled = new EnabledProjectsFilter(this.traySettings).select(project);
-			if (projectEnabled){
-				Image projectIcon = new ProjectLabelProvider().getImage(project);
-				if (projectIcon == IProjectLabelConstants.RED_IMG)
-					icon = IProjectLabelConstants.RED_IMG;
-				if (projectIcon == IProjectLabelConstants.ORANGE_IMG)
-					return IProjectLabelConstants.ORANGE_IMG; // break out
-				if (projectIcon == IProjectLabelConstants.YELLOW_IMG)
-					return IProjectLabelConstants.YELLOW_IMG; // break out
+
+	private Image deduceImageToSet(StatusRollup.Counts counts) {
+		String icon = counts.getIcon();
+		if (icon == ProjectRow.ORANGE)
+			return IProjectLabelConstants.ORANGE_IMG;
+		if (icon == ProjectRow.YELLOW)
+			return IProjectLabelConstants.YELLOW_IMG;
+		if (icon == ProjectRow.RED)
+			return IProjectLabelConstants.RED_IMG;
+		return IProjectLabelConstants.GREEN_IMG;
+	}
+
+	/**
+	 * Sleep until the next host is due, but wake up at least every
+	 * {@link #MAX_IDLE_SLEEP} ms so that newly added hosts are picked up.
+	 */
+	private long timeToNextPoll() {
+		long timeToNextPoll = pollScheduler.nextDueTime() - System.currentTimeMillis();
+		return Math.max(0, Math.min(timeToNextPoll, MAX_IDLE_SLEEP));
+	}
+
+	private void updateUI() throws InterruptedException {
+		List dueHosts = pollScheduler.dueHosts(System.currentTimeMillis());
+		if (dueHosts.isEmpty()) {
+			// late polls may have finished in the background since
+			ResultPublisher publisher = new ResultPublisher();
+			pollingEngine.publishLateResults(publisher);
+			if (publisher.healthChanged)
+				projectsView.refresh();
+			return;
+		}
+
+		ResultPublisher publisher = new ResultPublisher();
+		try {
+			ExecutionMode executionMode = ExecutionMode.valueOf(traySettings.get(ISettingsConstants.EXECUTION_MODE));
+			pollingEngine.setExecutionMode(executionMode);
+			CruiseExecutor.getInstance().setExecutionMode(executionMode);
+			pollingEngine.setMaxConcurrentPolls(traySettings.getInt(ISettingsConstants.POLL_THREADS));
+			pollingEngine.setDeadlines(traySettings.getInt(ISettingsConstants.POLL_DEADLINE) * 1000L, traySettings
+					.getInt(ISettingsConstants.POLL_HOST_DEADLINE) * 1000L, "cancel".equals(traySettings
+					.get(ISettingsConstants.POLL_LATE_POLICY)));
+			List pollHosts = planPoll(dueHosts);
+			RequestCoalescer.getInstance().startCycle(traySettings.getHosts());
+			try {
+				pollingEngine.poll(pollHosts, publisher);
+			} finally {
+				RequestCoalescer.getInstance().endCycle();
 			}
+		} finally {
+			// the hosts that got no result, because the poll failed, are polled again later
+			pollScheduler.requeue(dueHosts, System.currentTimeMillis());
+		}
+		polledAllHosts = true;
+
+		// a new index of enabled projects means the settings changed
+		long configuration = traySettings.getEnabledProjects().getVersion();
+		boolean reconfigured = configuration != lastConfiguration;
+		lastConfiguration = configuration;
+		if (reconfigured) {
+			retainConfiguredHosts();
+			projectsModel.update(mergeLatestProjects());
 		}
-		return icon;
+		if (publisher.healthChanged || reconfigured)
+			projectsView.refresh();
 	}
 
-	private void updateUI() {
-		final DashBoardProjects projects = getAllProjects();
-		Collection hosts = traySettings.getHosts();
+	/**
+	 * @return the hosts to poll, in order. The skipped hosts are put back on
+	 *         the queue, and their projects are no longer shown.
+	 */
+	private List planPoll(List dueHosts) {
+		List pollHosts = new ArrayList();
+		boolean changed = false;
+		long now = System.currentTimeMillis();
+		for (Iterator iterator = pollPlanner.plan(dueHosts).iterator(); iterator.hasNext();) {
+			PollPlanner.Decision decision = (PollPlanner.Decision) iterator.next();
+			Host host = decision.getHost();
+			if (decision.isPolled()) {
+				pollHosts.add(host);
+			} else {
+				changed |= latestProjects.remove(host.getHostString()) != null;
+				pollScheduler.reschedule(host, now);
+			}
+		}
+		if (changed)
+			projectsModel.update(mergeLatestProjects());
+		return pollHosts;
+	}
 
-		for (Iterator iterator = hosts.iterator(); iterator.hasNext();) {
-			Host host = (Host) iterator.next();
-			try {
-				projects.add(host.getCruiseProjects());
-			} catch (Exception e) {
-				log.error("Could not fetch project list: " + host, e);
+	/**
+	 * Records the result of each host as soon as it arrives, and publishes
+	 * the projects of the host right away if they changed, so that a slow
+	 * host does not hold back the others. A late host keeps its last known
+	 * projects.
+	 */
+	private class ResultPublisher implements IPollListener {
+
+		private boolean	healthChanged;
+
+		public void hostPolled(PollResult result) {
+			Host host = result.getHost();
+			String health = host.getHealth().toString();
+			long now = System.currentTimeMillis();
+			boolean changed = false;
+			if (result.isLate()) {
+				circuitBreaker.recordLate(host, now);
+				log.warn("Host is late, showing its last known projects: " + host);
+			} else if (result.isSuccessful()) {
+				if (!host.getHealth().isAvailable())
+					log.info("Host is reachable again: " + host);
+				circuitBreaker.recordSuccess(host, now);
+				// an unchanged status report yields the very same projects
+				changed = latestProjects.put(host.getHostString(), result.getProjects()) != result.getProjects();
+			} else {
+				recordFailure(host, result.getError(), now);
 			}
+			healthChanged |= !health.equals(host.getHealth().toString());
+			pollScheduler.reschedule(host, result.getProjects(), now);
+			if (changed)
+				projectsModel.update(host.getHostString(), getHostProjects(host));
 		}
+	}
 
-		updateProjectsList(projects);
+	/**
+	 * Keeps the last known projects of a failing host, so that they are shown
+	 * as stale rather than disappearing. The full stack trace is only logged
+	 * when the host is taken offline.
+	 */
+	private void recordFailure(Host host, Exception error, long now) {
+		if (circuitBreaker.recordFailure(host, error, now))
+			log.error("Could not fetch project list, will retry in "
+					+ (host.getHealth().getRetryTime() - now) / 1000 + " seconds: " + host, error);
+		else
+			log.warn("Could not fetch project list: " + host + ": " + error.getMessage());
 	}
 
+	/**
+	 * Merges the most recent project list of every host that is still
+	 * configured, whether or not it was polled in this cycle.
+	 */
+	private DashBoardProjects mergeLatestProjects() {
+		DashBoardProjects projects = getAllProjects();
+		for (Iterator iterator = traySettings.getHosts().iterator(); iterator.hasNext();) {
+			DashBoardProjects hostProjects = (DashBoardProjects) latestProjects.get(((Host) iterator.next())
+					.getHostString());
+			if (hostProjects != null)
+				projects.add(hostProjects);
+		}
+		return projects;
+	}
 
-    private void updateProjectsList(final DashBoardProjects projects) {
-    	final Table table = tableViewer.getTable();
-    	table.getDisplay().asyncExec(new Runnable() {
-    		public void run() {
-    			if (!table.isDisposed()) {
-    				showBubble(projects);
-    				tableViewer.setInput(projects);
-    				updateTrayIcon(projects);
-    				updateShellIcon(projects);
-    			}
-    		}
-
-			private void showBubble(final DashBoardProjects projects) {
-				DashBoardProjects oldProjects = (DashBoardProjects) tableViewer.getInput();
-				if (oldProjects != null) {
-					String message = "";
-					boolean failure = false;
-					Iterator it = projects.iterator();
-					while (it.hasNext()) {
-						DashBoardProject newProject = (DashBoardProject) it.next();
-						DashBoardProject oldProject = oldProjects.get(newProject);
-						if (oldProject == null || differentStates(newProject, oldProject)) {
-							String projectMessage = "";
-							if (newProject.getActivity().equals(IProjectLabelConstants.BUILDING)) 
-								projectMessage = newProject.getActivity();
-							else if (newProject.getActivity().equals(IProjectLabelConstants.CHECKING_MODIFICATIONS))
-								projectMessage = "";
-							else
-								projectMessage = newProject.getLastBuildStatus();
-							if (!StringUtils.isEmptyOrNull(projectMessage))
-								message += newProject.getName() + ": " + projectMessage + "\n";
-							failure |= wasFailure(newProject) && notBuilding(newProject);
-						}
-					}
-					if (!StringUtils.isEmptyOrNull(message)) {
-						tray.showBubble(message, failure);
-					}
+	/**
+	 * @return the configured projects of the given host, replaced by its
+	 *         most recent projects if it was polled.
+	 */
+	private DashBoardProjects getHostProjects(Host host) {
+		DashBoardProjects projects = new DashBoardProjects();
+		for (Iterator iterator = host.getConfiguredProjects().iterator(); iterator.hasNext();)
+			projects.add((DashBoardProject) iterator.next());
+		DashBoardProjects hostProjects = (DashBoardProjects) latestProjects.get(host.getHostString());
+		if (hostProjects != null)
+			projects.add(hostProjects);
+		return projects;
+	}
+
+	/**
+	 * Forgets the hosts that are no longer configured, once the settings
+	 * changed.
+	 */
+	private void retainConfiguredHosts() {
+		Set hostStrings = new HashSet();
+		for (Iterator iterator = traySettings.getHosts().iterator(); iterator.hasNext();)
+			hostStrings.add(((Host) iterator.next()).getHostString());
+		latestProjects.keySet().retainAll(hostStrings);
+		HttpClientPool.getInstance().retainHosts(hostStrings);
+		RequestCoalescer.getInstance().retainHosts(hostStrings);
+		pollPlanner.retainHosts(hostStrings);
+	}
+
+
+	/**
+	 * Shows the projects in the table, the tray icon and bubbles. Only what
+	 * changed is updated.
+	 */
+	private class ProjectsView implements IProjectsListener {
+
+		/** The input of the table, only accessed in the UI thread. */
+		private final DashBoardProjects	shownProjects	= new DashBoardProjects();
+		/** The enabled projects, the rows of the table. */
+		private DashBoardProjects		tableProjects	= new DashBoardProjects();
+		/** The counts of the enabled projects in the table. */
+		private final StatusRollup		rollup			= new StatusRollup() {
+			protected boolean isCounted(DashBoardProject project) {
+				return enabledProjectsFilter.select(project);
+			}
+		};
+
+		/** The changes not shown yet, guarded by itself. */
+		private final List				pendingDeltas	= new ArrayList();
+		/** The pending changes published during the first poll. */
+		private final Set				initialDeltas	= new HashSet();
+		private boolean					refreshPending;
+		private boolean					flushScheduled;
+
+		public void projectsChanged(ProjectsDelta delta) {
+			synchronized (pendingDeltas) {
+				pendingDeltas.add(delta);
+				if (!polledAllHosts)
+					initialDeltas.add(delta);
+			}
+			scheduleFlush();
+		}
+
+		/**
+		 * Shows everything again, for changes that are not project changes,
+		 * like enabling a project or a host going offline.
+		 */
+		public void refresh() {
+			synchronized (pendingDeltas) {
+				refreshPending = true;
+			}
+			scheduleFlush();
+		}
+
+		/**
+		 * Hosts answer one after the other, so changes are shown in batches:
+		 * there is at most one pending <code>Display.asyncExec()</code>,
+		 * which shows all the changes made until it runs.
+		 */
+		private void scheduleFlush() {
+			synchronized (pendingDeltas) {
+				if (flushScheduled)
+					return;
+				flushScheduled = true;
+			}
+			asyncExec(new Runnable() {
+				public void run() {
+					flush();
 				}
-				
+			});
+		}
+
+		private void flush() {
+			List deltas;
+			List announcedDeltas;
+			boolean refresh;
+			synchronized (pendingDeltas) {
+				deltas = new ArrayList(pendingDeltas);
+				pendingDeltas.clear();
+				// the first projects of each host are not news
+				announcedDeltas = new ArrayList(deltas);
+				announcedDeltas.removeAll(initialDeltas);
+				initialDeltas.clear();
+				refresh = refreshPending;
+				refreshPending = false;
+				flushScheduled = false;
 			}
 
-			private boolean notBuilding(DashBoardProject newProject) {
-				return !newProject.getActivity().equals(IProjectLabelConstants.BUILDING);
+			showBubble(announcedDeltas);
+			boolean structureChanged = refresh;
+			boolean statusChanged = refresh;
+			for (Iterator iterator = deltas.iterator(); iterator.hasNext();) {
+				ProjectsDelta delta = (ProjectsDelta) iterator.next();
+				structureChanged |= updateTable(delta);
+				rollup.apply(delta);
+				statusChanged |= delta.hasChanges(ProjectChange.ADDED | ProjectChange.REMOVED
+						| ProjectChange.ACTIVITY | ProjectChange.STATUS);
 			}
+			if (structureChanged || tableViewer.getInput() == null)
+				updateRows();
+			if (refresh)
+				rollup.reset(shownProjects);
+			if (statusChanged)
+				updateIcons();
+		}
+
+		private void asyncExec(final Runnable runnable) {
+			final Table table = tableViewer.getTable();
+			table.getDisplay().asyncExec(new Runnable() {
+				public void run() {
+					if (!table.isDisposed())
+						runnable.run();
+				}
+			});
+		}
 
-			private boolean wasFailure(DashBoardProject newProject) {
-				return newProject.getLastBuildStatus().equals(IProjectLabelConstants.FAILURE);
+		/**
+		 * Changed projects are updated in place, and only if their row has
+		 * been created. Added and removed projects shift the rows, so the
+		 * enabled projects have to be listed again.
+		 * 
+		 * @return whether projects were added or removed.
+		 */
+		private boolean updateTable(ProjectsDelta delta) {
+			boolean structureChanged = false;
+			for (Iterator iterator = delta.getChanges().iterator(); iterator.hasNext();) {
+				ProjectChange change = (ProjectChange) iterator.next();
+				DashBoardProject project = change.getProject();
+				if (change.isRemoved()) {
+					shownProjects.remove(project);
+					structureChanged = true;
+				} else if (change.isAdded()) {
+					shownProjects.add(project);
+					structureChanged = true;
+				} else {
+					shownProjects.replace(project);
+					if (tableProjects.get(project) != null) {
+						tableProjects.replace(project);
+						tableViewer.update(project, null);
+					}
+				}
 			}
+			return structureChanged;
+		}
 
-			private boolean differentStates(DashBoardProject newProject,
-					DashBoardProject oldProject) {
-				return !oldProject.getActivity().equals(newProject.getActivity());
+		/**
+		 * Lists the enabled projects again, and clears the rows so that the
+		 * visible ones are created again. The selected project stays selected.
+		 */
+		private void updateRows() {
+			Table table = tableViewer.getTable();
+			TableItem[] selection = table.getSelection();
+			Object selectedProject = selection.length == 0 ? null : selection[0].getData();
+
+			tableProjects = new DashBoardProjects();
+			for (Iterator iterator = shownProjects.iterator(); iterator.hasNext();) {
+				DashBoardProject project = (DashBoardProject) iterator.next();
+				if (enabledProjectsFilter.select(project))
+					tableProjects.add(project);
+			}
+			tableViewer.setInput(tableProjects);
+			int index = indexOf(tableProjects, selectedProject);
+			if (index >= 0)
+				table.setSelection(index);
+		}
+
+		private int indexOf(DashBoardProjects projects, Object project) {
+			if (project == null)
+				return -1;
+			DashBoardProject[] projectList = projects.toArray();
+			for (int i = 0; i < projectList.length; i++)
+				if (projectList[i].equals(project))
+					return i;
+			return -1;
+		}
+
+		private void updateIcons() {
+			updateTrayIcon(rollup.getOverall());
+			updateShellIcon(rollup.getOverall());
+		}
+
+		private void showBubble(List deltas) {
+			List changes = new ArrayList();
+			for (Iterator iterator = deltas.iterator(); iterator.hasNext();)
+				changes.addAll(((ProjectsDelta) iterator.next()).getChanges());
+			String message = "";
+			boolean failure = false;
+			for (Iterator iterator = changes.iterator(); iterator.hasNext();) {
+				ProjectChange change = (ProjectChange) iterator.next();
+				if (!change.is(ProjectChange.ADDED | ProjectChange.ACTIVITY) || change.isRemoved())
+					continue;
+				DashBoardProject newProject = change.getProject();
+				String projectMessage = "";
+				ProjectActivity activity = newProject.getProjectActivity();
+				if (activity == ProjectActivity.BUILDING)
+					projectMessage = newProject.getActivity();
+				else if (activity == ProjectActivity.CHECKING_MODIFICATIONS)
+					projectMessage = "";
+				else
+					projectMessage = newProject.getLastBuildStatus();
+				if (!StringUtils.isEmptyOrNull(projectMessage))
+					message += newProject.getName() + ": " + projectMessage + "\n";
+				failure |= wasFailure(newProject) && notBuilding(newProject);
 			}
-    	});
-    }
-    
+			if (!StringUtils.isEmptyOrNull(message)) {
+				tray.showBubble(message, failure);
+			}
+		}
+
+		private boolean notBuilding(DashBoardProject newProject) {
+			return newProject.getProjectActivity() != ProjectActivity.BUILDING;
+		}
+
+		private boolean wasFailure(DashBoardProject newProject) {
+			return newProject.getBuildStatus() == BuildStatus.FAILURE;
+		}
+	}
+
 	private DashBoardProjects getAllProjects() {
 		DashBoardProjects enabledProjects = new DashBoardProjects();
 
@@ -178,8 +525,8 @@ public class JCCTrayRunnable implements Runnable {
 		return enabledProjects;
 	}
 
-	protected void updateShellIcon(DashBoardProjects projects) {
-		tableViewer.getTable().getShell().setImage(deduceImageToSet(projects));
+	protected void updateShellIcon(StatusRollup.Counts counts) {
+		tableViewer.getTable().getShell().setImage(deduceImageToSet(counts));
 	}
 
 }
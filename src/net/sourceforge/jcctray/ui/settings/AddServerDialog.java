@@ -38,6 +38,7 @@ import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.MessageBox;
 import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Spinner;
 import org.eclipse.swt.widgets.Text;
 
 /**
@@ -85,6 +86,7 @@ public class AddServerDialog {
 			Host host = new Host(hostStringText.getText(), serverURLString.getText(), userName.getText(), password.getText());
 			IStructuredSelection selection = (IStructuredSelection) comboViewer.getSelection();
 			host.setCruiseClass(((Class) selection.getFirstElement()).getName());
+			host.setPollInterval(pollInterval.getSelection());
 			traySettings.addHost(host);
 			Utils.saveSettings(shell);
 			shell.close();
@@ -107,6 +109,7 @@ public class AddServerDialog {
 	private final IJCCTraySettings	traySettings;
 	private Text					userName;
 	private Text 					password;
+	private Spinner					pollInterval;
 
 	public AddServerDialog(Shell shell, IJCCTraySettings traySettings) {
 		this.parentShell = shell;
@@ -147,6 +150,13 @@ public class AddServerDialog {
 		password = new Text(shell, SWT.BORDER | SWT.PASSWORD);
 		password.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
 
+		new Label(shell, SWT.NONE).setText("Poll &Interval:");
+		pollInterval = new Spinner(shell, SWT.NONE);
+		pollInterval.setMinimum(0);
+		pollInterval.setMaximum(3600);
+		pollInterval.setSelection(0);
+		pollInterval.setToolTipText("Seconds between two polls of this server, 0 uses the global poll interval");
+
 		okButton = new Button(shell, SWT.NONE);
 		okButton.setText("&Ok");
 		okButton.setLayoutData(new GridData(GridData.HORIZONTAL_ALIGN_BEGINNING));
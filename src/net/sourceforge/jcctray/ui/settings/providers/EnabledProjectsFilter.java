@@ -16,7 +16,6 @@
 package net.sourceforge.jcctray.ui.settings.providers;
 
 import net.sourceforge.jcctray.model.DashBoardProject;
-import net.sourceforge.jcctray.model.Host;
 import net.sourceforge.jcctray.model.IJCCTraySettings;
 
 import org.eclipse.jface.viewers.Viewer;
@@ -26,7 +25,7 @@ import org.eclipse.jface.viewers.ViewerFilter;
  * A filter that selects projects that have been enabled in the
  * {@link IJCCTraySettings}.
  * 
- * @see Host#getConfiguredProject(String)
+ * @see IJCCTraySettings#getEnabledProjects()
  * @see DashBoardProject#isEnabled()
  * @author Ketan Padegaonkar
  */
@@ -43,13 +42,8 @@ public class EnabledProjectsFilter extends ViewerFilter {
 	}
 
 	public boolean select(Object aProject) {
-		if (aProject instanceof DashBoardProject) {
-			DashBoardProject project = (DashBoardProject) aProject;
-			Host host = project.getHost();
-			Host hostInSettings = traySettings.findHostByString(host.getHostString());
-			DashBoardProject projectInSettings = hostInSettings.getConfiguredProject(project.getName());
-			return (projectInSettings != null && projectInSettings.isEnabled());
-		}
+		if (aProject instanceof DashBoardProject)
+			return traySettings.getEnabledProjects().contains((DashBoardProject) aProject);
 		return false;
 	}
 }
\ No newline at end of file
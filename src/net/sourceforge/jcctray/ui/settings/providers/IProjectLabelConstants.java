@@ -15,6 +15,8 @@
  ******************************************************************************/
 package net.sourceforge.jcctray.ui.settings.providers;
 
+import net.sourceforge.jcctray.model.ProjectRow;
+
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.widgets.Display;
 
@@ -24,7 +26,7 @@ import org.eclipse.swt.widgets.Display;
  */
 public interface IProjectLabelConstants {
 
-	public static final String	WAITING_FOR_BUILD		= "Waiting for next build to happen";
+	public static final String	WAITING_FOR_BUILD		= ProjectRow.WAITING_FOR_BUILD;
 	public static final String	UNKNOWN					= "Unknown";
 	public static final String	CHECKING_MODIFICATIONS	= "CheckingModifications";
 	public static final String	BUILDING				= "Building";
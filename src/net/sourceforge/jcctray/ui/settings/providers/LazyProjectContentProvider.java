@@ -0,0 +1,66 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.ui.settings.providers;
+
+import net.sourceforge.jcctray.model.DashBoardProjects;
+
+import org.eclipse.jface.viewers.ILazyContentProvider;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.Viewer;
+
+/**
+ * Interprets the {@link DashBoardProjects} model for a virtual
+ * {@link TableViewer}: a project is only handed to the viewer when its row
+ * becomes visible.
+ * <p>
+ * Lazy viewers do not support filters, the input should only contain the
+ * projects to show.
+ */
+public class LazyProjectContentProvider implements ILazyContentProvider {
+
+	private final TableViewer	viewer;
+	private DashBoardProjects	projects;
+
+	public LazyProjectContentProvider(TableViewer viewer) {
+		this.viewer = viewer;
+	}
+
+	public void updateElement(int index) {
+		if (projects != null && index < projects.count())
+			replace(projects.getProject(index), index);
+	}
+
+	public void dispose() {
+
+	}
+
+	public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
+		projects = newInput instanceof DashBoardProjects ? (DashBoardProjects) newInput : null;
+		setItemCount(projects == null ? 0 : projects.count());
+	}
+
+	/**
+	 * Hands the project to the viewer, as the element of the given row.
+	 */
+	protected void replace(Object project, int index) {
+		viewer.replace(project, index);
+	}
+
+	protected void setItemCount(int count) {
+		viewer.setItemCount(count);
+	}
+
+}
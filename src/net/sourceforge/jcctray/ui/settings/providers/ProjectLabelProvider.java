@@ -15,10 +15,10 @@
  ******************************************************************************/
 package net.sourceforge.jcctray.ui.settings.providers;
 
-import java.util.TimeZone;
-
 import net.sourceforge.jcctray.model.DashBoardProject;
-import net.sourceforge.jcctray.utils.StringUtils;
+import net.sourceforge.jcctray.model.Host;
+import net.sourceforge.jcctray.model.HostHealth;
+import net.sourceforge.jcctray.model.ProjectRow;
 
 import org.eclipse.jface.viewers.ILabelProvider;
 import org.eclipse.jface.viewers.ILabelProviderListener;
@@ -41,59 +41,59 @@ public class ProjectLabelProvider implements ITableLabelProvider, ILabelProvider
 	}
 
 	public Image getImage(Object element) {
-		DashBoardProject project = (DashBoardProject) element;
-		String activity = project.getActivity();
-		String lastBuildStatus = project.getLastBuildStatus();
-
-		if (lastBuildStatus.equals(SUCCESS)) {
-			if (activity.equals(BUILDING))
-				return IProjectLabelConstants.YELLOW_IMG;
-			else
-				return IProjectLabelConstants.GREEN_IMG;
-		} else if (lastBuildStatus.equals(FAILURE)) {
-			if (activity.equals(BUILDING))
-				return IProjectLabelConstants.ORANGE_IMG;
-			else
-				return IProjectLabelConstants.RED_IMG;
-		} else if (activity.equals(BUILDING))
+		return getIcon(((DashBoardProject) element).getRow());
+	}
+
+	private Image getIcon(ProjectRow row) {
+		String icon = row.getIcon();
+		if (icon == ProjectRow.GREEN)
+			return IProjectLabelConstants.GREEN_IMG;
+		if (icon == ProjectRow.YELLOW)
 			return IProjectLabelConstants.YELLOW_IMG;
+		if (icon == ProjectRow.ORANGE)
+			return IProjectLabelConstants.ORANGE_IMG;
+		if (icon == ProjectRow.RED)
+			return IProjectLabelConstants.RED_IMG;
 		return IProjectLabelConstants.GRAY_IMG;
 	}
 
+	/**
+	 * Returns the text of the row of the project, which for snapshots was
+	 * worked out when the snapshot was taken.
+	 */
 	public String getColumnText(Object element, int column) {
 		DashBoardProject project = (DashBoardProject) element;
-		String name = project.getName();
-		String activity = project.getActivity();
-		String nextBuildTime = project.getNextBuildTime();
-		String lastBuildLabel = project.getLastBuildLabel();
-		String lastBuildTime = project.getLastBuildTime();
+		ProjectRow row = project.getRow();
 
 		switch (column) {
 		case 0:
-			return name;
+			return row.getName();
 		case 1:
-			return project.getHost().getHostString();
+			return getHostText(row, project.getHost());
 		case 2:
-			return activity;
+			return row.getActivity();
 		case 3:
-			String formatDate = project.getHost().getCruise().formatDate(nextBuildTime, TimeZone.getDefault());
-
-			if (StringUtils.isEmptyOrNull(nextBuildTime) || StringUtils.isEmptyOrNull(formatDate))
-				return WAITING_FOR_BUILD;
-
-			return "Next build check at: " + formatDate;
-
+			return row.getNextBuildText();
 		case 4:
-			return lastBuildLabel;
+			return row.getLastBuildLabel();
 		case 5:
-			if (StringUtils.isEmptyOrNull(lastBuildTime))
-				return "";
-			return project.getHost().getCruise().formatDate(lastBuildTime, null);
+			return row.getLastBuildText();
 		default:
 			return "";
 		}
 	}
 
+	/**
+	 * Flags hosts that could not be reached, since their projects then show
+	 * the last known status.
+	 */
+	private String getHostText(ProjectRow row, Host host) {
+		HostHealth health = host.getHealth();
+		if (health.isAvailable())
+			return row.getHostText();
+		return row.getHostText() + " (" + health + ")";
+	}
+
 	public void addListener(ILabelProviderListener arg0) {
 		// TODO Auto-generated method stub
 
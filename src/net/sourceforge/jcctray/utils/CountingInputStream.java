@@ -0,0 +1,63 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An {@link InputStream} that counts the bytes read through it.
+ */
+public class CountingInputStream extends FilterInputStream {
+
+	private long	count;
+
+	public CountingInputStream(InputStream in) {
+		super(in);
+	}
+
+	public int read() throws IOException {
+		int b = super.read();
+		if (b != -1)
+			count++;
+		return b;
+	}
+
+	public int read(byte[] b, int off, int len) throws IOException {
+		int read = super.read(b, off, len);
+		if (read > 0)
+			count += read;
+		return read;
+	}
+
+	public long skip(long n) throws IOException {
+		long skipped = super.skip(n);
+		count += skipped;
+		return skipped;
+	}
+
+	public boolean markSupported() {
+		return false;
+	}
+
+	/**
+	 * @return the number of bytes read so far.
+	 */
+	public long getCount() {
+		return count;
+	}
+}
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.utils;
+
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Parses the build timestamps found in status reports, and formats them for
+ * display. Timestamps look like <code>2007-06-22T11:30:28.82+05:30</code>;
+ * fractions of seconds are ignored.
+ * <p>
+ * Each distinct timestamp is parsed only once, and each instant is
+ * formatted only once per time zone: both are kept in bounded caches. All
+ * the methods can be called from any thread.
+ */
+public final class DateEngine {
+
+	/**
+	 * Reads timestamps as local time, ignoring any offset. Used for
+	 * CruiseControl, which reports the time of the server without an offset.
+	 */
+	public static final DateEngine	LOCAL			= new DateEngine(false);
+
+	/**
+	 * Reads timestamps that carry their offset from UTC, like those of
+	 * CruiseControl.NET. Timestamps without an offset cannot be parsed.
+	 */
+	public static final DateEngine	ZONED			= new DateEngine(true);
+
+	/** Returned by {@link #parse(String)} when a timestamp cannot be parsed. */
+	public static final long		UNPARSEABLE		= Long.MIN_VALUE;
+
+	private static final String		DISPLAY_FORMAT	= "h:mm:ss a, dd MMM";
+	private static final int		CACHE_SIZE		= 1024;
+
+	private static final Map		formatted		= createCache();
+
+	private static final class FormatKey {
+		private final long		instant;
+		private final String	zone;
+
+		private FormatKey(long instant, String zone) {
+			this.instant = instant;
+			this.zone = zone;
+		}
+
+		public int hashCode() {
+			return (int) (instant ^ (instant >>> 32)) * 31 + zone.hashCode();
+		}
+
+		public boolean equals(Object obj) {
+			if (!(obj instanceof FormatKey))
+				return false;
+			FormatKey other = (FormatKey) obj;
+			return instant == other.instant && zone.equals(other.zone);
+		}
+	}
+
+	private final boolean			zoned;
+	private final Map				parsed			= createCache();
+
+	private DateEngine(boolean zoned) {
+		this.zoned = zoned;
+	}
+
+	/**
+	 * @return the instant of the given timestamp, in milliseconds since the
+	 *         epoch, or {@link #UNPARSEABLE}.
+	 */
+	public long parse(String timestamp) {
+		if (timestamp == null)
+			return UNPARSEABLE;
+		Long instant = (Long) parsed.get(timestamp);
+		if (instant == null) {
+			instant = Long.valueOf(parseTimestamp(timestamp.trim()));
+			parsed.put(timestamp, instant);
+		}
+		return instant.longValue();
+	}
+
+	/**
+	 * @param timeZone
+	 *            the time zone to show the time in, <code>null</code> for
+	 *            the default time zone.
+	 * @return the given timestamp formatted for display, or <code>null</code>
+	 *         if it cannot be parsed.
+	 */
+	public String format(String timestamp, TimeZone timeZone) {
+		long instant = parse(timestamp);
+		if (instant == UNPARSEABLE)
+			return null;
+		return format(instant, timeZone);
+	}
+
+	/**
+	 * @param timeZone
+	 *            the time zone to show the time in, <code>null</code> for
+	 *            the default time zone.
+	 * @return the given instant formatted for display.
+	 */
+	public static String format(long instant, TimeZone timeZone) {
+		if (timeZone == null)
+			timeZone = TimeZone.getDefault();
+		FormatKey key = new FormatKey(instant, timeZone.getID());
+		String text = (String) formatted.get(key);
+		if (text == null) {
+			SimpleDateFormat format = new SimpleDateFormat(DISPLAY_FORMAT, Locale.US);
+			format.setTimeZone(timeZone);
+			text = format.format(new Date(instant));
+			formatted.put(key, text);
+		}
+		return text;
+	}
+
+	private long parseTimestamp(String timestamp) {
+		int[] fields = new int[6];
+		int position = 0;
+		for (int i = 0; i < fields.length; i++) {
+			if (i > 0) {
+				char separator = i == 3 ? 'T' : i < 3 ? '-' : ':';
+				if (position >= timestamp.length() || timestamp.charAt(position) != separator)
+					return UNPARSEABLE;
+				position++;
+			}
+			int end = skipDigits(timestamp, position);
+			if (end == position)
+				return UNPARSEABLE;
+			fields[i] = Integer.parseInt(timestamp.substring(position, end));
+			position = end;
+		}
+		if (position < timestamp.length() && timestamp.charAt(position) == '.')
+			position = skipDigits(timestamp, position + 1);
+
+		TimeZone timeZone = TimeZone.getDefault();
+		long offset = 0;
+		if (zoned) {
+			if (position >= timestamp.length())
+				return UNPARSEABLE;
+			char sign = timestamp.charAt(position);
+			String rest = timestamp.substring(position + 1).replaceAll(":", "");
+			if (sign == 'Z' && rest.length() == 0)
+				offset = 0;
+			else if ((sign == '+' || sign == '-') && rest.length() == 4 && skipDigits(rest, 0) == 4)
+				offset = (Integer.parseInt(rest.substring(0, 2)) * 60 + Integer.parseInt(rest.substring(2))) * 60000L
+						* (sign == '-' ? -1 : 1);
+			else
+				return UNPARSEABLE;
+			timeZone = TimeZone.getTimeZone("UTC");
+		}
+
+		GregorianCalendar calendar = new GregorianCalendar(timeZone);
+		calendar.clear();
+		calendar.set(fields[0], fields[1] - 1, fields[2], fields[3], fields[4], fields[5]);
+		return calendar.getTimeInMillis() - offset;
+	}
+
+	private static int skipDigits(String text, int position) {
+		while (position < text.length() && Character.isDigit(text.charAt(position)))
+			position++;
+		return position;
+	}
+
+	private static Map createCache() {
+		return Collections.synchronizedMap(new LinkedHashMap(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry eldest) {
+				return size() > CACHE_SIZE;
+			}
+		});
+	}
+}
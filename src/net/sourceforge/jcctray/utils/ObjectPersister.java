@@ -105,6 +105,9 @@ public class ObjectPersister {
 			if(!StringUtils.isEmptyOrNull(host.getPassword())){
 				writer.write(" password=\"" + escape(host.getPassword()) + "\"");
 			}
+			if (host.getPollInterval() > 0) {
+				writer.write(" pollInterval=\"" + host.getPollInterval() + "\"");
+			}
 			writer.write(">\n");
 			saveProjects(writer, host.getConfiguredProjects());
 			writer.write("		</host>\n");
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class CircuitBreakerTest extends TestCase {
+
+	private static class NoJitter extends Random {
+		private static final long	serialVersionUID	= 1L;
+
+		public double nextDouble() {
+			return 0;
+		}
+	}
+
+	private JCCTraySettings	settings;
+	private CircuitBreaker	circuitBreaker;
+	private Host			host;
+	private Exception		error;
+
+	protected void setUp() throws Exception {
+		settings = new JCCTraySettings();
+		settings.set(ISettingsConstants.CIRCUIT_FAILURE_THRESHOLD, "2");
+		settings.set(ISettingsConstants.CIRCUIT_BACKOFF_INITIAL, "10");
+		settings.set(ISettingsConstants.CIRCUIT_BACKOFF_MAX, "35");
+		circuitBreaker = new CircuitBreaker(settings, new NoJitter());
+		host = new Host("myHost", "http://my.host");
+		error = new Exception("Connection refused");
+	}
+
+	public void testStaysClosedBelowThreshold() throws Exception {
+		assertFalse(circuitBreaker.recordFailure(host, error, 0));
+		assertEquals(HostHealth.CLOSED, host.getHealth().getState());
+		assertFalse(host.getHealth().isAvailable());
+		assertSame(error, host.getHealth().getLastError());
+		assertTrue(host.getHealth().allowPoll(0));
+	}
+
+	public void testOpensAfterThreshold() throws Exception {
+		circuitBreaker.recordFailure(host, error, 0);
+		assertTrue(circuitBreaker.recordFailure(host, error, 1000));
+
+		HostHealth health = host.getHealth();
+		assertEquals(HostHealth.OPEN, health.getState());
+		assertEquals(11000, health.getRetryTime());
+		assertFalse(health.allowPoll(10999));
+		assertEquals("offline", health.toString());
+	}
+
+	public void testAllowsSingleProbeAfterRetryTime() throws Exception {
+		openCircuit();
+		HostHealth health = host.getHealth();
+		assertTrue(health.allowPoll(10000));
+		assertEquals(HostHealth.HALF_OPEN, health.getState());
+		assertEquals(0, health.getRetryTime());
+	}
+
+	public void testBacksOffExponentiallyWhenProbesFail() throws Exception {
+		openCircuit();
+		host.getHealth().allowPoll(10000);
+		assertFalse(circuitBreaker.recordFailure(host, error, 10000));
+		assertEquals(30000, host.getHealth().getRetryTime());
+
+		host.getHealth().allowPoll(30000);
+		circuitBreaker.recordFailure(host, error, 30000);
+		assertEquals(65000, host.getHealth().getRetryTime());
+	}
+
+	public void testClosesWhenProbeSucceeds() throws Exception {
+		openCircuit();
+		host.getHealth().allowPoll(10000);
+		circuitBreaker.recordSuccess(host, 10000);
+
+		HostHealth health = host.getHealth();
+		assertEquals(HostHealth.CLOSED, health.getState());
+		assertTrue(health.isAvailable());
+		assertNull(health.getLastError());
+		assertEquals(10000, health.getLastSuccessTime());
+	}
+
+	public void testLateHostKeepsCircuitClosed() throws Exception {
+		HostHealth health = host.getHealth();
+		health.recordLate();
+		assertEquals(HostHealth.CLOSED, health.getState());
+		assertFalse(health.isAvailable());
+		assertEquals("late", health.toString());
+
+		circuitBreaker.recordSuccess(host, 1000);
+		assertFalse(health.isLate());
+		assertEquals("online", health.toString());
+	}
+
+	public void testLateProbeOpensCircuitAgain() throws Exception {
+		openCircuit();
+		HostHealth health = host.getHealth();
+		assertTrue(health.allowPoll(10000));
+		circuitBreaker.recordLate(host, 10000);
+
+		assertEquals(HostHealth.OPEN, health.getState());
+		assertEquals(30000, health.getRetryTime());
+		assertFalse(health.allowPoll(29999));
+		assertFalse(health.isLate());
+	}
+
+	public void testLateHostKeepsCircuitClosedThroughTheBreaker() throws Exception {
+		circuitBreaker.recordLate(host, 1000);
+		assertEquals(HostHealth.CLOSED, host.getHealth().getState());
+		assertTrue(host.getHealth().isLate());
+		assertEquals(0, host.getHealth().getConsecutiveFailures());
+	}
+
+	public void testAppliesJitter() throws Exception {
+		circuitBreaker = new CircuitBreaker(settings, new Random(42));
+		for (int i = 0; i < 100; i++) {
+			long backoff = circuitBreaker.getBackoffMillis(0);
+			assertTrue("" + backoff, backoff > 7500 && backoff <= 10000);
+		}
+	}
+
+	private void openCircuit() {
+		circuitBreaker.recordFailure(host, error, 0);
+		circuitBreaker.recordFailure(host, error, 0);
+	}
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class CruiseExecutorTest extends TestCase {
+
+	private CruiseExecutor	executor;
+	private Host			host;
+
+	protected void setUp() throws Exception {
+		executor = new CruiseExecutor(2);
+		host = new Host("host", "http://host");
+	}
+
+	protected void tearDown() throws Exception {
+		executor.shutdown();
+	}
+
+	public void testRunsTasksInTheBackground() throws Exception {
+		final Thread caller = Thread.currentThread();
+		final Thread[] worker = new Thread[1];
+		final CountDownLatch done = new CountDownLatch(1);
+		executor.execute(new Runnable() {
+			public void run() {
+				worker[0] = Thread.currentThread();
+				done.countDown();
+			}
+		});
+
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertNotSame(caller, worker[0]);
+		assertTrue(worker[0].getName().startsWith("CruiseWorker-"));
+	}
+
+	public void testRunsTasksAfterChangingMode() throws Exception {
+		executor.setExecutionMode(ExecutionMode.VIRTUAL);
+		assertSame(ExecutionMode.VIRTUAL.availableMode(), executor.getExecutionMode());
+		final CountDownLatch done = new CountDownLatch(1);
+		executor.execute(new Runnable() {
+			public void run() {
+				done.countDown();
+			}
+		});
+
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+	}
+
+	public void testFetchesProjectsInTheBackground() throws Exception {
+		final Thread caller = Thread.currentThread();
+		final DashBoardProjects projects = new DashBoardProjects();
+		final Set[] askedNames = new Set[1];
+		Future future = executor.getProjects(new DefaultCruise() {
+			public DashBoardProjects getProjects(Host host, Set projectNames) {
+				assertNotSame(caller, Thread.currentThread());
+				askedNames[0] = projectNames;
+				return projects;
+			}
+		}, host, Collections.singleton("project"));
+
+		assertSame(projects, future.get(5, TimeUnit.SECONDS));
+		assertEquals(Collections.singleton("project"), askedNames[0]);
+	}
+
+	public void testFetchesAllProjectsOfOtherCruises() throws Exception {
+		final DashBoardProjects projects = new DashBoardProjects();
+		ICruise cruise = new ICruise() {
+			public void forceBuild(DashBoardProject project) {
+			}
+
+			public String getName() {
+				return "plain";
+			}
+
+			public String formatDate(String date, TimeZone timeZone) {
+				return date;
+			}
+
+			public DashBoardProjects getProjects(Host host) {
+				return projects;
+			}
+		};
+
+		assertSame(projects, executor.getProjects(cruise, host, Collections.singleton("project")).get(5,
+				TimeUnit.SECONDS));
+	}
+
+	public void testFailsWithTheExceptionOfTheForcedBuild() throws Exception {
+		final Exception error = new Exception("could not force");
+		Future future = executor.forceBuild(new DefaultCruise() {
+			public void forceBuild(DashBoardProject project) throws Exception {
+				throw error;
+			}
+		}, new DashBoardProject("project", host));
+
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail("the build was forced");
+		} catch (ExecutionException e) {
+			assertSame(error, e.getCause());
+		}
+	}
+
+	public void testDefaultCruiseFetchesAsynchronously() throws Exception {
+		Future future = new DefaultCruise().getProjectsAsync(host, null);
+		assertEquals(0, ((DashBoardProjects) future.get(5, TimeUnit.SECONDS)).count());
+		assertNull(new DefaultCruise().forceBuildAsync(new DashBoardProject("project", host)).get(5, TimeUnit.SECONDS));
+	}
+}
@@ -15,6 +15,8 @@
  ******************************************************************************/
 package net.sourceforge.jcctray.model;
 
+import java.util.Iterator;
+
 import junit.framework.TestCase;
 
 public class DashBoardProjectsTest extends TestCase {
@@ -40,4 +42,95 @@ public class DashBoardProjectsTest extends TestCase {
 
 		assertEquals(3, projects2.count());
 	}
+
+	public void testReplacesProjectAndMovesItToTheEnd() throws Exception {
+		DashBoardProjects projects = new DashBoardProjects();
+		projects.add(new DashBoardProject("a"));
+		projects.add(new DashBoardProject("b"));
+		DashBoardProject newA = new DashBoardProject("a");
+		projects.add(newA);
+
+		assertEquals(2, projects.count());
+		assertEquals("b", projects.getProject(0).getName());
+		assertSame(newA, projects.getProject(1));
+	}
+
+	public void testReplacesProjectInPlace() throws Exception {
+		DashBoardProjects projects = new DashBoardProjects();
+		projects.add(new DashBoardProject("a"));
+		projects.add(new DashBoardProject("b"));
+		DashBoardProject newA = new DashBoardProject("a");
+		projects.replace(newA);
+		projects.replace(new DashBoardProject("c"));
+
+		assertEquals(3, projects.count());
+		assertSame(newA, projects.getProject(0));
+		assertSame(newA, projects.get(new DashBoardProject("a")));
+		assertEquals("c", projects.getProject(2).getName());
+	}
+
+	public void testFindsProjectsByNameAndHost() throws Exception {
+		Host host1 = new Host("host1", "http://host1");
+		Host host2 = new Host("host2", "http://host2");
+		DashBoardProjects projects = new DashBoardProjects();
+		DashBoardProject project1 = new DashBoardProject("a", host1);
+		DashBoardProject project2 = new DashBoardProject("a", host2);
+		projects.add(project1);
+		projects.add(project2);
+
+		assertEquals(2, projects.count());
+		assertSame(project1, projects.get(new DashBoardProject("a", host1)));
+		assertSame(project2, projects.get(new DashBoardProject("a", host2)));
+		assertNull(projects.get(new DashBoardProject("b", host1)));
+	}
+
+	public void testRemovesProjects() throws Exception {
+		DashBoardProjects projects = new DashBoardProjects();
+		projects.add(new DashBoardProject("a"));
+		projects.add(new DashBoardProject("b"));
+		projects.remove(new DashBoardProject("a"));
+
+		assertEquals(1, projects.count());
+		assertEquals("b", projects.getProject(0).getName());
+		assertNull(projects.get(new DashBoardProject("a")));
+	}
+
+	public void testRemovesProjectsThroughIterator() throws Exception {
+		DashBoardProjects projects = new DashBoardProjects();
+		projects.add(new DashBoardProject("a"));
+		projects.add(new DashBoardProject("b"));
+		assertEquals("a", projects.getProject(0).getName());
+		Iterator iterator = projects.iterator();
+		iterator.next();
+		iterator.remove();
+
+		assertEquals(1, projects.count());
+		assertEquals("b", projects.getProject(0).getName());
+	}
+
+	public void testIndexesProjectsAgainWhenMovedToHost() throws Exception {
+		Host host = new Host("host", "http://host");
+		DashBoardProjects projects = new DashBoardProjects();
+		projects.add(new DashBoardProject("a"));
+		projects.add(new DashBoardProject("b"));
+		projects.setHost(host);
+
+		assertEquals(host, projects.getProject(0).getHost());
+		assertEquals("a", projects.get(new DashBoardProject("a", host)).getName());
+		assertNull(projects.get(new DashBoardProject("a")));
+	}
+
+	public void testMergesManyProjects() throws Exception {
+		Host host = new Host("host", "http://host");
+		DashBoardProjects hostProjects = new DashBoardProjects();
+		for (int i = 0; i < 50000; i++)
+			hostProjects.add(new DashBoardProject("project" + i, host));
+		DashBoardProjects projects = new DashBoardProjects();
+		projects.add(hostProjects);
+		projects.add(hostProjects);
+
+		assertEquals(50000, projects.count());
+		assertEquals("project49999", projects.getProject(49999).getName());
+		assertNotNull(projects.get(new DashBoardProject("project25000", host)));
+	}
 }
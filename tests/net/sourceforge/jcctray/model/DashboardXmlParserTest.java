@@ -0,0 +1,250 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Collections;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.httpclient.HttpClient;
+
+public class DashboardXmlParserTest extends TestCase {
+
+	private static final String	REPORT	= "<Projects><Project name=\"p1\" activity=\"Sleeping\"/>"
+												+ "<Project name=\"p2\" activity=\"Building\"/></Projects>";
+
+	private StubStatusServer	server;
+	private HttpClient			client;
+	private File				cacheDir;
+
+	protected void setUp() throws Exception {
+		server = new StubStatusServer();
+		server.setBody(REPORT);
+		client = new HttpClient();
+		cacheDir = new File("statuscache.test");
+	}
+
+	protected void tearDown() throws Exception {
+		server.stop();
+		File[] files = cacheDir.listFiles();
+		for (int i = 0; files != null && i < files.length; i++)
+			files[i].delete();
+		cacheDir.delete();
+	}
+
+	public void testFetchesProjects() throws Exception {
+		DashBoardProjects projects = DashboardXmlParser.getProjects(server.getUrl("/cctray.xml"), client, null,
+				new StatusReportCache(null));
+		assertEquals(2, projects.count());
+		assertEquals("p2", projects.getProject(1).getName());
+	}
+
+	public void testReusesCachedProjectsWhenNotModified() throws Exception {
+		server.setETag("\"v1\"");
+		StatusReportCache cache = new StatusReportCache(null);
+		String url = server.getUrl("/cctray.xml");
+
+		DashBoardProjects first = DashboardXmlParser.getProjects(url, client, null, cache);
+		assertNull(server.getLastRequest().getFirst("If-None-Match"));
+
+		DashBoardProjects second = DashboardXmlParser.getProjects(url, client, null, cache);
+		assertEquals("\"v1\"", server.getLastRequest().getFirst("If-None-Match"));
+		assertSame(first, second);
+	}
+
+	public void testParsesAgainWhenModified() throws Exception {
+		server.setETag("\"v1\"");
+		StatusReportCache cache = new StatusReportCache(null);
+		String url = server.getUrl("/cctray.xml");
+		DashboardXmlParser.getProjects(url, client, null, cache);
+
+		server.setETag("\"v2\"");
+		server.setBody("<Projects><Project name=\"p3\"/></Projects>");
+		DashBoardProjects projects = DashboardXmlParser.getProjects(url, client, null, cache);
+		assertEquals(1, projects.count());
+		assertEquals("p3", projects.getProject(0).getName());
+	}
+
+	public void testSendsLastModifiedBack() throws Exception {
+		server.setResponseHeader("Last-Modified", "Wed, 09 May 2007 10:57:56 GMT");
+		StatusReportCache cache = new StatusReportCache(null);
+		String url = server.getUrl("/cctray.xml");
+		DashboardXmlParser.getProjects(url, client, null, cache);
+		DashboardXmlParser.getProjects(url, client, null, cache);
+		assertEquals("Wed, 09 May 2007 10:57:56 GMT", server.getLastRequest().getFirst("If-Modified-Since"));
+	}
+
+	public void testReusesValidatorsAfterRestart() throws Exception {
+		server.setETag("\"v1\"");
+		String url = server.getUrl("/cctray.xml");
+		DashboardXmlParser.getProjects(url, client, null, new StatusReportCache(cacheDir));
+
+		DashBoardProjects projects = DashboardXmlParser.getProjects(url, client, null, new StatusReportCache(cacheDir));
+		assertEquals("\"v1\"", server.getLastRequest().getFirst("If-None-Match"));
+		assertEquals(2, server.getRequests().size());
+		assertEquals(2, projects.count());
+		assertEquals("Building", projects.getProject(1).getActivity());
+	}
+
+	public void testSavesTheIndexOnlyWhenValidatorsChange() throws Exception {
+		server.setResponseHeader("Last-Modified", "Wed, 09 May 2007 10:57:56 GMT");
+		String url = server.getUrl("/cctray.xml");
+		StatusReportCache cache = new StatusReportCache(cacheDir);
+		DashboardXmlParser.getProjects(url, client, null, cache);
+		File index = new File(cacheDir, "index.properties");
+		assertTrue(index.delete());
+
+		DashboardXmlParser.getProjects(url, client, null, cache);
+		assertFalse(index.exists());
+
+		server.setResponseHeader("Last-Modified", "Thu, 10 May 2007 10:57:56 GMT");
+		DashboardXmlParser.getProjects(url, client, null, cache);
+		assertTrue(index.exists());
+	}
+
+	public void testFetchesAgainWhenCachedReportIsLost() throws Exception {
+		server.setETag("\"v1\"");
+		String url = server.getUrl("/cctray.xml");
+		DashboardXmlParser.getProjects(url, client, null, new StatusReportCache(cacheDir));
+		File[] files = cacheDir.listFiles();
+		for (int i = 0; i < files.length; i++)
+			if (files[i].getName().endsWith(".xml"))
+				files[i].delete();
+
+		DashBoardProjects projects = DashboardXmlParser.getProjects(url, client, null, new StatusReportCache(cacheDir));
+		assertEquals(2, projects.count());
+		assertEquals(3, server.getRequests().size());
+		assertNull(server.getLastRequest().getFirst("If-None-Match"));
+	}
+
+	public void testReusesProjectsWhenReportIsUnchanged() throws Exception {
+		StatusReportCache cache = new StatusReportCache(null);
+		String url = server.getUrl("/cctray.xml");
+
+		DashBoardProjects first = DashboardXmlParser.getProjects(url, client, null, cache);
+		DashBoardProjects second = DashboardXmlParser.getProjects(url, client, null, cache);
+		assertSame(first, second);
+		assertEquals(2, server.getRequests().size());
+		assertNull(server.getLastRequest().getFirst("If-None-Match"));
+	}
+
+	public void testReadsReportsLargerThanTheBuffer() throws Exception {
+		StringBuffer report = new StringBuffer("<Projects>");
+		for (int i = 0; i < 1000; i++)
+			report.append("<Project name=\"project").append(i).append("\" activity=\"Sleeping\"/>");
+		server.setBody(report.append("</Projects>").toString());
+		StatusReportCache cache = new StatusReportCache(null);
+		String url = server.getUrl("/cctray.xml");
+
+		DashBoardProjects projects = DashboardXmlParser.getProjects(url, client, null, cache);
+		assertEquals(1000, projects.count());
+		assertEquals("project999", projects.getProject(999).getName());
+		assertSame(projects, DashboardXmlParser.getProjects(url, client, null, cache));
+	}
+
+	public void testParsesAgainWhenReportChanges() throws Exception {
+		StatusReportCache cache = new StatusReportCache(null);
+		String url = server.getUrl("/cctray.xml");
+
+		DashBoardProjects first = DashboardXmlParser.getProjects(url, client, null, cache);
+		server.setBody("<Projects><Project name=\"p1\" activity=\"Building\"/></Projects>");
+		DashBoardProjects second = DashboardXmlParser.getProjects(url, client, null, cache);
+		assertNotSame(first, second);
+		assertEquals(1, second.count());
+		assertEquals("Building", second.getProject(0).getActivity());
+	}
+
+	public void testDoesNotReuseProjectsReadForOtherNames() throws Exception {
+		StatusReportCache cache = new StatusReportCache(null);
+		String url = server.getUrl("/cctray.xml");
+		Set projectNames = Collections.singleton("p2");
+
+		DashBoardProjects selected = DashboardXmlParser.getProjects(url, client, projectNames, cache);
+		assertEquals(1, selected.count());
+		assertEquals("p2", selected.getProject(0).getName());
+
+		DashBoardProjects all = DashboardXmlParser.getProjects(url, client, null, cache);
+		assertEquals(2, all.count());
+		assertEquals(1, DashboardXmlParser.getProjects(url, client, projectNames, cache).count());
+	}
+
+	public void testKeepsReportsForAllProjectsApart() throws Exception {
+		server.setETag("\"v1\"");
+		String url = server.getUrl("/cctray.xml");
+		StatusReportCache cache = new StatusReportCache(cacheDir);
+		DashBoardProjects selected = DashboardXmlParser.getProjects(url, client, Collections.singleton("p1"), cache);
+
+		DashBoardProjects all = DashboardXmlParser.getProjects(url, client, null, cache);
+		assertEquals(2, all.count());
+		assertNull(server.getLastRequest().getFirst("If-None-Match"));
+
+		assertSame(selected, DashboardXmlParser.getProjects(url, client, Collections.singleton("p1"), cache));
+		assertEquals("\"v1\"", server.getLastRequest().getFirst("If-None-Match"));
+		assertSame(all, DashboardXmlParser.getProjects(url, client, null, cache));
+	}
+
+	public void testAcceptsCompressedReports() throws Exception {
+		DashboardXmlParser.getProjects(server.getUrl("/cctray.xml"), client, null, new StatusReportCache(null));
+		assertEquals("gzip, deflate", server.getLastRequest().getFirst("Accept-Encoding"));
+	}
+
+	public void testDecompressesGzipReports() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		GZIPOutputStream out = new GZIPOutputStream(bytes);
+		out.write(REPORT.getBytes("UTF-8"));
+		out.close();
+		server.setBody(bytes.toByteArray());
+		server.setResponseHeader("Content-Encoding", "gzip");
+
+		TransferStatistics statistics = TransferStatistics.getInstance();
+		statistics.reset();
+		DashBoardProjects projects = DashboardXmlParser.getProjects(server.getUrl("/cctray.xml"), client, null,
+				new StatusReportCache(null));
+		assertEquals(2, projects.count());
+		assertEquals(1, statistics.getFetches());
+		assertEquals(bytes.size(), statistics.getWireBytes());
+		assertEquals(REPORT.length(), statistics.getXmlBytes());
+	}
+
+	public void testDecompressesZlibDeflateReports() throws Exception {
+		assertDecompressesDeflate(new Deflater());
+	}
+
+	public void testDecompressesRawDeflateReports() throws Exception {
+		assertDecompressesDeflate(new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+	}
+
+	private void assertDecompressesDeflate(Deflater deflater) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DeflaterOutputStream out = new DeflaterOutputStream(bytes, deflater);
+		out.write(REPORT.getBytes("UTF-8"));
+		out.close();
+		server.setBody(bytes.toByteArray());
+		server.setResponseHeader("Content-Encoding", "deflate");
+		server.setETag("\"v1\"");
+
+		DashBoardProjects projects = DashboardXmlParser.getProjects(server.getUrl("/cctray.xml"), client, null,
+				new StatusReportCache(null));
+		assertEquals(2, projects.count());
+		assertEquals("p2", projects.getProject(1).getName());
+	}
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class ExecutionModeTest extends TestCase {
+
+	public void testFindsModesByName() throws Exception {
+		assertSame(ExecutionMode.PLATFORM, ExecutionMode.valueOf("platform"));
+		assertSame(ExecutionMode.PLATFORM, ExecutionMode.valueOf("nonsense"));
+		assertSame(ExecutionMode.PLATFORM, ExecutionMode.valueOf(null));
+		ExecutionMode virtual = ExecutionMode.valueOf("Virtual");
+		assertSame(ExecutionMode.VIRTUAL.isAvailable() ? ExecutionMode.VIRTUAL : ExecutionMode.PLATFORM, virtual);
+	}
+
+	public void testCreatesNamedDaemonPlatformThreads() throws Exception {
+		ThreadFactory factory = ExecutionMode.PLATFORM.newThreadFactory("Worker-");
+		Thread thread = factory.newThread(new Runnable() {
+			public void run() {
+			}
+		});
+		assertEquals("Worker-1", thread.getName());
+		assertTrue(thread.isDaemon());
+	}
+
+	public void testCreatesThreadsInEitherMode() throws Exception {
+		final boolean[] ran = new boolean[1];
+		Thread thread = ExecutionMode.VIRTUAL.newThreadFactory("Virtual-").newThread(new Runnable() {
+			public void run() {
+				ran[0] = true;
+			}
+		});
+		thread.start();
+		thread.join(5000);
+		assertTrue(ran[0]);
+		assertTrue(thread.getName().startsWith("Virtual-"));
+	}
+
+	public void testFallsBackToPlatformThreads() throws Exception {
+		assertSame(ExecutionMode.PLATFORM, ExecutionMode.PLATFORM.availableMode());
+		assertSame(ExecutionMode.VIRTUAL.isAvailable() ? ExecutionMode.VIRTUAL : ExecutionMode.PLATFORM,
+				ExecutionMode.VIRTUAL.availableMode());
+	}
+
+	public void testBoundsPlatformExecutors() throws Exception {
+		ExecutorService executor = ExecutionMode.PLATFORM.newExecutor("Worker-", 0);
+		try {
+			assertEquals(1, ((ThreadPoolExecutor) executor).getMaximumPoolSize());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	public void testRunsTasksInEitherMode() throws Exception {
+		ExecutorService executor = ExecutionMode.VIRTUAL.availableMode().newExecutor("Worker-", 1);
+		try {
+			assertEquals("done", executor.submit(new Callable() {
+				public Object call() {
+					return "done";
+				}
+			}).get(5, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.auth.AuthScope;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+
+public class HttpClientPoolTest extends TestCase {
+
+	private JCCTraySettings	settings;
+	private HttpClientPool	pool;
+	private Host			host;
+
+	protected void setUp() throws Exception {
+		settings = new JCCTraySettings();
+		settings.set(ISettingsConstants.HTTP_TIMEOUT, "1234");
+		settings.set(ISettingsConstants.HTTP_MAX_CONNECTIONS_PER_HOST, "3");
+		pool = new HttpClientPool(settings);
+		host = new Host("myHost", "http://my.host", "user", "secret");
+	}
+
+	protected void tearDown() throws Exception {
+		pool.shutdown();
+	}
+
+	public void testReusesClientForSameHost() throws Exception {
+		assertSame(pool.getClient(host), pool.getClient(host));
+		assertSame(pool.getClient(host), pool.getClient(new Host("myHost", "http://my.host", "user", "secret")));
+	}
+
+	public void testUsesSeparateClientsForDifferentHosts() throws Exception {
+		assertNotSame(pool.getClient(host), pool.getClient(new Host("otherHost", "http://my.host")));
+	}
+
+	public void testConfiguresPooledConnectionManager() throws Exception {
+		HttpClient client = pool.getClient(host);
+		assertTrue(client.getHttpConnectionManager() instanceof MultiThreadedHttpConnectionManager);
+		HttpConnectionManagerParams params = client.getHttpConnectionManager().getParams();
+		assertEquals(3, params.getDefaultMaxConnectionsPerHost());
+		assertEquals(1234, params.getConnectionTimeout());
+		assertEquals(1234, params.getSoTimeout());
+		assertNotNull(client.getState().getCredentials(AuthScope.ANY));
+	}
+
+	public void testRebuildsClientWhenHostChanges() throws Exception {
+		HttpClient client = pool.getClient(host);
+		host.setPassword("changed");
+		assertNotSame(client, pool.getClient(host));
+	}
+
+	public void testRebuildsClientWhenTimeoutChanges() throws Exception {
+		HttpClient client = pool.getClient(host);
+		settings.set(ISettingsConstants.HTTP_TIMEOUT, "5000");
+		assertNotSame(client, pool.getClient(host));
+	}
+
+	public void testFinishesRequestsOfReplacedClients() throws Exception {
+		StubStatusServer server = new StubStatusServer();
+		try {
+			server.setBody("<Projects/>");
+			server.hold();
+			Host local = new Host("local", server.getUrl(""));
+			final HttpClient client = pool.getClient(local);
+			final GetMethod method = new GetMethod(server.getUrl("/cctray.xml"));
+			final Object[] outcome = new Object[1];
+			Thread request = new Thread() {
+				public void run() {
+					try {
+						client.executeMethod(method);
+						outcome[0] = method.getResponseBodyAsString();
+					} catch (Exception e) {
+						outcome[0] = e;
+					}
+				}
+			};
+			request.start();
+			server.awaitRequest();
+
+			settings.set(ISettingsConstants.HTTP_TIMEOUT, "5000");
+			assertNotSame(client, pool.getClient(local));
+			server.release();
+			request.join(10000);
+			assertEquals("<Projects/>", outcome[0]);
+			assertEquals(1, pool.getRetiredCount());
+
+			method.releaseConnection();
+			pool.getClient(local);
+			assertEquals(0, pool.getRetiredCount());
+		} finally {
+			server.stop();
+		}
+	}
+
+	public void testPicksUpIdleTimeoutChanges() throws Exception {
+		settings.set(ISettingsConstants.HTTP_IDLE_TIMEOUT, "60");
+		pool.getClient(host);
+		assertEquals(60000, pool.getIdleTimeout());
+
+		settings.set(ISettingsConstants.HTTP_IDLE_TIMEOUT, "5");
+		pool.getClient(host);
+		assertEquals(5000, pool.getIdleTimeout());
+	}
+
+	public void testDropsClientsOfRemovedHosts() throws Exception {
+		HttpClient client = pool.getClient(host);
+		pool.retainHosts(Collections.EMPTY_LIST);
+		assertNotSame(client, pool.getClient(host));
+	}
+}
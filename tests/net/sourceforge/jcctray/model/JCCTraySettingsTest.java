@@ -106,4 +106,41 @@ public class JCCTraySettingsTest extends TestCase {
 		assertEquals(2, loadedSettings.findHostByString("human Readable Name1").configuredProjectCount());
 
 	}
+
+	public void testIndexesEnabledProjectsWhenSettingsChange() throws Exception {
+		DashBoardProject project = new DashBoardProject("myProject");
+		project.setEnabled(true);
+		host1.addConfiguredProject(project);
+		EnabledProjects noProjects = settings.getEnabledProjects();
+		assertFalse(noProjects.contains(project));
+
+		settings.addHost(host1);
+		EnabledProjects enabledProjects = settings.getEnabledProjects();
+		assertTrue(enabledProjects.contains(project));
+		assertTrue(enabledProjects.getVersion() > noProjects.getVersion());
+
+		project.setEnabled(false);
+		assertSame(enabledProjects, settings.getEnabledProjects());
+		((JCCTraySettings) settings).save(JCCTRAY_TEST_XML);
+		assertFalse(settings.getEnabledProjects().contains(project));
+
+		project.setEnabled(true);
+		((JCCTraySettings) settings).save(JCCTRAY_TEST_XML);
+		settings.removeHost(host1);
+		assertFalse(settings.getEnabledProjects().contains(project));
+	}
+
+	public void testPersistsHostPollInterval() throws Exception {
+		JCCTraySettings settings1 = new JCCTraySettings();
+		host1.setPollInterval(120);
+		settings1.addHost(host1);
+		settings1.addHost(host2);
+		settings1.save(JCCTRAY_TEST_XML);
+
+		JCCTraySettings loadedSettings = new JCCTraySettings();
+		loadedSettings.load(JCCTRAY_TEST_XML);
+
+		assertEquals(120, loadedSettings.findHostByString("human Readable Name1").getPollInterval());
+		assertEquals(0, loadedSettings.findHostByString("human Readable Name2").getPollInterval());
+	}
 }
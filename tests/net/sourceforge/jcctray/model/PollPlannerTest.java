@@ -0,0 +1,91 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class PollPlannerTest extends TestCase {
+
+	private JCCTraySettings	settings;
+	private PollPlanner		planner;
+	private Host			empty;
+	private Host			disabled;
+	private Host			enabled;
+
+	protected void setUp() throws Exception {
+		settings = new JCCTraySettings();
+		planner = new PollPlanner(settings);
+		empty = new Host("empty", "http://empty");
+		disabled = new Host("disabled", "http://disabled");
+		disabled.addConfiguredProject(project("d1", false));
+		enabled = new Host("enabled", "http://enabled");
+		enabled.addConfiguredProject(project("e1", true));
+		enabled.addConfiguredProject(project("e2", false));
+		settings.addHost(empty);
+		settings.addHost(disabled);
+		settings.addHost(enabled);
+	}
+
+	public void testPollsHostsWithEnabledProjectsFirst() throws Exception {
+		List plan = planner.plan(Arrays.asList(new Host[] { empty, disabled, enabled }));
+
+		assertEquals(3, plan.size());
+		assertDecision(plan.get(0), enabled, PollPlanner.POLL);
+		assertDecision(plan.get(1), disabled, PollPlanner.DEFER);
+		assertDecision(plan.get(2), empty, PollPlanner.SKIP);
+		assertTrue(((PollPlanner.Decision) plan.get(1)).isPolled());
+		assertFalse(((PollPlanner.Decision) plan.get(2)).isPolled());
+	}
+
+	public void testExplainsDecisions() throws Exception {
+		planner.plan(Arrays.asList(new Host[] { empty, disabled, enabled }));
+
+		assertEquals("no configured projects", planner.getDecision(empty).getReason());
+		assertEquals("all 1 projects are disabled", planner.getDecision(disabled).getReason());
+		assertEquals("1 of 2 projects are enabled", planner.getDecision(enabled).getReason());
+	}
+
+	public void testFollowsEnabledProjects() throws Exception {
+		disabled.addConfiguredProject(project("d2", true));
+		settings.addHost(disabled);
+
+		List plan = planner.plan(Arrays.asList(new Host[] { disabled }));
+
+		assertDecision(plan.get(0), disabled, PollPlanner.POLL);
+	}
+
+	public void testForgetsRemovedHosts() throws Exception {
+		planner.plan(Arrays.asList(new Host[] { empty, enabled }));
+		planner.retainHosts(Arrays.asList(new String[] { "enabled" }));
+
+		assertNull(planner.getDecision(empty));
+		assertNotNull(planner.getDecision(enabled));
+	}
+
+	private static DashBoardProject project(String name, boolean enabled) {
+		DashBoardProject project = new DashBoardProject(name);
+		project.setEnabled(enabled);
+		return project;
+	}
+
+	private static void assertDecision(Object decision, Host host, String action) {
+		assertSame(host, ((PollPlanner.Decision) decision).getHost());
+		assertEquals(action, ((PollPlanner.Decision) decision).getAction());
+	}
+}
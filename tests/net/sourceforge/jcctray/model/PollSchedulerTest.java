@@ -0,0 +1,217 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class PollSchedulerTest extends TestCase {
+
+	private JCCTraySettings	settings;
+	private PollScheduler	scheduler;
+	private Host			hotHost;
+	private Host			coldHost;
+
+	protected void setUp() throws Exception {
+		settings = new JCCTraySettings();
+		settings.set(ISettingsConstants.POLL_INTERVAL, "5");
+		hotHost = new Host("hot", "http://hot");
+		hotHost.setPollInterval(2);
+		coldHost = new Host("cold", "http://cold");
+		settings.addHost(hotHost);
+		settings.addHost(coldHost);
+		scheduler = new PollScheduler(settings);
+	}
+
+	public void testNewHostsAreDueImmediately() throws Exception {
+		List dueHosts = scheduler.dueHosts(1000);
+		assertEquals(2, dueHosts.size());
+		assertTrue(dueHosts.contains(hotHost));
+		assertTrue(dueHosts.contains(coldHost));
+	}
+
+	public void testDoesNotReturnHostsThatAreBeingPolled() throws Exception {
+		scheduler.dueHosts(1000);
+		assertTrue(scheduler.dueHosts(100000).isEmpty());
+		assertEquals(Long.MAX_VALUE, scheduler.nextDueTime());
+	}
+
+	public void testReschedulesHostsAtTheirOwnInterval() throws Exception {
+		scheduler.dueHosts(1000);
+		scheduler.reschedule(hotHost, 1000);
+		scheduler.reschedule(coldHost, 1000);
+
+		assertEquals(3000, scheduler.nextDueTime());
+		assertTrue(scheduler.dueHosts(2999).isEmpty());
+
+		List dueHosts = scheduler.dueHosts(3000);
+		assertEquals(1, dueHosts.size());
+		assertSame(hotHost, dueHosts.get(0));
+
+		assertEquals(6000, scheduler.nextDueTime());
+		dueHosts = scheduler.dueHosts(6000);
+		assertEquals(1, dueHosts.size());
+		assertSame(coldHost, dueHosts.get(0));
+	}
+
+	public void testFallsBackToGlobalPollInterval() throws Exception {
+		assertEquals(2000, scheduler.getPollIntervalMillis(hotHost));
+		assertEquals(5000, scheduler.getPollIntervalMillis(coldHost));
+		settings.set(ISettingsConstants.POLL_INTERVAL, "30");
+		assertEquals(30000, scheduler.getPollIntervalMillis(coldHost));
+	}
+
+	public void testDropsHostsRemovedFromSettings() throws Exception {
+		scheduler.dueHosts(1000);
+		scheduler.reschedule(hotHost, 1000);
+		scheduler.reschedule(coldHost, 1000);
+		settings.removeHost(hotHost);
+
+		List dueHosts = scheduler.dueHosts(10000);
+		assertEquals(1, dueHosts.size());
+		assertSame(coldHost, dueHosts.get(0));
+
+		scheduler.reschedule(hotHost, 10000);
+		assertEquals(Long.MAX_VALUE, scheduler.nextDueTime());
+	}
+
+	public void testBacksOffWhileProjectsAreIdle() throws Exception {
+		settings.set(ISettingsConstants.POLL_INTERVAL_MAX, "30");
+		coldHost.addConfiguredProject(new DashBoardProject("idle"));
+		DashBoardProjects projects = projects(coldHost, "idle", "Sleeping");
+
+		assertEquals(5000, rescheduleColdHost(projects, 0));
+		assertEquals(10000, rescheduleColdHost(projects, 0));
+		assertEquals(20000, rescheduleColdHost(projects, 0));
+		assertEquals(30000, rescheduleColdHost(projects, 0));
+		assertEquals(30000, rescheduleColdHost(projects, 0));
+	}
+
+	public void testBacksOffToTwiceTheIntervalByDefault() throws Exception {
+		coldHost.addConfiguredProject(new DashBoardProject("idle"));
+		DashBoardProjects projects = projects(coldHost, "idle", "Sleeping");
+
+		assertEquals(5000, rescheduleColdHost(projects, 0));
+		assertEquals(10000, rescheduleColdHost(projects, 0));
+		assertEquals(10000, rescheduleColdHost(projects, 0));
+	}
+
+	public void testPollsFasterWhileProjectsAreBuilding() throws Exception {
+		settings.set(ISettingsConstants.POLL_INTERVAL_MIN, "1");
+		coldHost.addConfiguredProject(new DashBoardProject("busy"));
+
+		assertEquals(5000, rescheduleColdHost(projects(coldHost, "busy", "Sleeping"), 0));
+		assertEquals(10000, rescheduleColdHost(projects(coldHost, "busy", "Sleeping"), 0));
+		assertEquals(1000, rescheduleColdHost(projects(coldHost, "busy", "Building"), 0));
+		assertEquals(1000, rescheduleColdHost(projects(coldHost, "busy", "CheckingModifications"), 0));
+		assertEquals(5000, rescheduleColdHost(projects(coldHost, "busy", "Sleeping"), 0));
+	}
+
+	public void testIgnoresActivityOfProjectsThatAreNotConfigured() throws Exception {
+		assertEquals(5000, rescheduleColdHost(projects(coldHost, "other", "Building"), 0));
+		assertEquals(10000, rescheduleColdHost(projects(coldHost, "other", "Building"), 0));
+	}
+
+	public void testUsesFixedIntervalWhenNotAdaptive() throws Exception {
+		settings.set(ISettingsConstants.POLL_ADAPTIVE, "false");
+		coldHost.addConfiguredProject(new DashBoardProject("busy"));
+
+		assertEquals(5000, rescheduleColdHost(projects(coldHost, "busy", "Building"), 0));
+		assertEquals(5000, rescheduleColdHost(projects(coldHost, "busy", "Sleeping"), 0));
+		assertEquals(5000, rescheduleColdHost(projects(coldHost, "busy", "Sleeping"), 0));
+	}
+
+	public void testResetsIntervalWhenPollFails() throws Exception {
+		DashBoardProjects projects = projects(coldHost, "idle", "Sleeping");
+		rescheduleColdHost(projects, 0);
+		assertEquals(10000, rescheduleColdHost(projects, 0));
+		assertEquals(5000, rescheduleColdHost(null, 0));
+	}
+
+	public void testDoesNotPollOfflineHostsBeforeRetryTime() throws Exception {
+		settings.set(ISettingsConstants.CIRCUIT_FAILURE_THRESHOLD, "1");
+		settings.set(ISettingsConstants.CIRCUIT_BACKOFF_INITIAL, "60");
+		scheduler.dueHosts(0);
+		scheduler.reschedule(hotHost, 0);
+		new CircuitBreaker(settings, new Random(42)).recordFailure(coldHost, new Exception(), 0);
+		scheduler.reschedule(coldHost, 0);
+
+		long retryTime = coldHost.getHealth().getRetryTime();
+		assertTrue(retryTime > 5000);
+		assertFalse(scheduler.dueHosts(5000).contains(coldHost));
+		assertTrue(scheduler.dueHosts(retryTime).contains(coldHost));
+		assertEquals(HostHealth.HALF_OPEN, coldHost.getHealth().getState());
+	}
+
+	public void testRequeuesHostsThatWereNotRescheduled() throws Exception {
+		List dueHosts = scheduler.dueHosts(1000);
+		scheduler.reschedule(hotHost, 1000);
+		scheduler.requeue(dueHosts, 2000);
+
+		assertEquals(3000, scheduler.nextDueTime());
+		assertEquals(1, scheduler.dueHosts(3000).size());
+		assertEquals(7000, scheduler.nextDueTime());
+	}
+
+	public void testRequeuesDueHostsWhenThePollFails() throws Exception {
+		List dueHosts = scheduler.dueHosts(1000);
+		PollingEngine engine = new PollingEngine(1);
+		Thread.currentThread().interrupt();
+		try {
+			engine.poll(dueHosts, new IPollListener() {
+				public void hostPolled(PollResult result) {
+					scheduler.reschedule(result.getHost(), 1000);
+				}
+			});
+			fail("the poll was not interrupted");
+		} catch (InterruptedException e) {
+			// expected
+		} finally {
+			scheduler.requeue(dueHosts, 1000);
+			engine.shutdown();
+		}
+
+		assertEquals(3000, scheduler.nextDueTime());
+		assertEquals(2, scheduler.dueHosts(6000).size());
+	}
+
+	public void testPicksUpHostsAddedToSettings() throws Exception {
+		scheduler.dueHosts(1000);
+		Host newHost = new Host("new", "http://new");
+		settings.addHost(newHost);
+
+		List dueHosts = scheduler.dueHosts(1500);
+		assertEquals(1, dueHosts.size());
+		assertSame(newHost, dueHosts.get(0));
+	}
+
+	private long rescheduleColdHost(DashBoardProjects projects, long now) {
+		settings.removeHost(hotHost);
+		scheduler.dueHosts(Long.MAX_VALUE);
+		scheduler.reschedule(coldHost, projects, now);
+		return scheduler.nextDueTime() - now;
+	}
+
+	private DashBoardProjects projects(Host host, String name, String activity) {
+		DashBoardProjects projects = new DashBoardProjects();
+		DashBoardProject project = new DashBoardProject(name, host);
+		project.setActivity(activity);
+		projects.add(project);
+		return projects;
+	}
+}
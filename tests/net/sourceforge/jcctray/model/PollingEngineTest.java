@@ -0,0 +1,370 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class PollingEngineTest extends TestCase {
+
+	/** How long a stub waits to be released before it gives up. */
+	private static final long	TIMEOUT	= 10000;
+
+	/**
+	 * A cruise that tells when it is polled, and answers once it is
+	 * released, so that the tests do not depend on timing.
+	 */
+	private static class StubCruise implements IFilteringCruise {
+		private final CountDownLatch	arrived;
+		private final CountDownLatch	release;
+		private final boolean			fail;
+		private volatile Thread			pollThread;
+
+		StubCruise(CountDownLatch arrived, CountDownLatch release, boolean fail) {
+			this.arrived = arrived;
+			this.release = release;
+			this.fail = fail;
+		}
+
+		public void forceBuild(DashBoardProject project) throws Exception {
+		}
+
+		public String getName() {
+			return "stub";
+		}
+
+		public String formatDate(String date, TimeZone timeZone) {
+			return date;
+		}
+
+		public DashBoardProjects getProjects(Host host) throws Exception {
+			return getProjects(host, null);
+		}
+
+		public DashBoardProjects getProjects(Host host, Set projectNames) throws Exception {
+			pollThread = Thread.currentThread();
+			if (arrived != null)
+				arrived.countDown();
+			if (!release.await(TIMEOUT, TimeUnit.MILLISECONDS))
+				throw new Exception("was not released in time: " + host.getHostName());
+			if (fail)
+				throw new Exception("could not connect to " + host.getHostName());
+			DashBoardProjects projects = new DashBoardProjects();
+			projects.add(new DashBoardProject(host.getHostString() + "-project", host));
+			return projects;
+		}
+	}
+
+	private PollingEngine	engine;
+	/** Released when the test is over. */
+	private CountDownLatch	blocked;
+
+	protected void setUp() throws Exception {
+		engine = new PollingEngine(4);
+		blocked = new CountDownLatch(1);
+	}
+
+	protected void tearDown() throws Exception {
+		blocked.countDown();
+		engine.shutdown();
+	}
+
+	public void testPollsHostsConcurrently() throws Exception {
+		// every host waits for all of them to be polled
+		CountDownLatch polled = new CountDownLatch(4);
+		List hosts = new ArrayList();
+		for (int i = 0; i < 4; i++)
+			hosts.add(new Host("host" + i, "http://host" + i, new StubCruise(polled, polled, false)));
+
+		Map results = engine.poll(hosts);
+
+		assertEquals(4, results.size());
+		assertAllSuccessful(results);
+	}
+
+	public void testReturnsResultsInHostOrder() throws Exception {
+		CountDownLatch fastPolled = new CountDownLatch(1);
+		Host slow = new Host("slow", "http://slow", new StubCruise(null, fastPolled, false));
+		Host fast = new Host("fast", "http://fast", answering());
+		List hosts = new ArrayList();
+		hosts.add(slow);
+		hosts.add(fast);
+
+		Object[] results = engine.poll(hosts, countDownOn(fast, fastPolled, new ArrayList())).values().toArray();
+
+		assertSame(slow, ((PollResult) results[0]).getHost());
+		assertSame(fast, ((PollResult) results[1]).getHost());
+	}
+
+	public void testNotifiesResultsAsTheyArrive() throws Exception {
+		CountDownLatch fastPolled = new CountDownLatch(1);
+		Host slow = new Host("slow", "http://slow", new StubCruise(null, fastPolled, false));
+		Host fast = new Host("fast", "http://fast", answering());
+		List hosts = new ArrayList();
+		hosts.add(slow);
+		hosts.add(fast);
+		List polledHosts = new ArrayList();
+
+		Map results = engine.poll(hosts, countDownOn(fast, fastPolled, polledHosts));
+
+		assertEquals(2, polledHosts.size());
+		assertSame(fast, polledHosts.get(0));
+		assertSame(slow, polledHosts.get(1));
+		assertSame(slow, ((PollResult) results.values().iterator().next()).getHost());
+	}
+
+	public void testIsolatesFailingHosts() throws Exception {
+		Host good = new Host("good", "http://good", answering());
+		Host bad = new Host("bad", "http://bad", new StubCruise(null, new CountDownLatch(0), true));
+		List hosts = new ArrayList();
+		hosts.add(bad);
+		hosts.add(good);
+
+		Map results = engine.poll(hosts);
+
+		PollResult badResult = (PollResult) results.get(bad);
+		assertFalse(badResult.isSuccessful());
+		assertNull(badResult.getProjects());
+		assertEquals("could not connect to http://bad", badResult.getError().getMessage());
+
+		PollResult goodResult = (PollResult) results.get(good);
+		assertTrue(goodResult.isSuccessful());
+		assertEquals(1, goodResult.getProjects().count());
+		assertEquals("good-project", goodResult.getProjects().getProject(0).getName());
+	}
+
+	public void testChangesConcurrencyLimit() throws Exception {
+		engine.setMaxConcurrentPolls(2);
+		assertEquals(2, engine.getMaxConcurrentPolls());
+		engine.setMaxConcurrentPolls(10);
+		assertEquals(10, engine.getMaxConcurrentPolls());
+		engine.setMaxConcurrentPolls(0);
+		assertEquals(1, engine.getMaxConcurrentPolls());
+	}
+
+	public void testIgnoresConcurrencyLimitWithVirtualThreads() throws Exception {
+		engine.setExecutionMode(ExecutionMode.VIRTUAL);
+		if (ExecutionMode.VIRTUAL.isAvailable())
+			assertEquals(Integer.MAX_VALUE, engine.getMaxConcurrentPolls());
+		else
+			assertSame(ExecutionMode.PLATFORM, engine.getExecutionMode());
+
+		engine.setExecutionMode(ExecutionMode.PLATFORM);
+		assertEquals(4, engine.getMaxConcurrentPolls());
+	}
+
+	/**
+	 * Virtual threads are not limited to the 4 platform threads of the
+	 * engine, so all the hosts are polled at once. Without virtual threads
+	 * the engine falls back to its platform threads.
+	 */
+	public void testPollsWithVirtualThreads() throws Exception {
+		boolean virtual = ExecutionMode.VIRTUAL.isAvailable();
+		engine.setExecutionMode(ExecutionMode.valueOf("virtual"));
+		int hostCount = virtual ? 20 : 4;
+		CountDownLatch polled = new CountDownLatch(hostCount);
+		StubCruise cruise = new StubCruise(polled, polled, false);
+		List hosts = new ArrayList();
+		for (int i = 0; i < hostCount; i++)
+			hosts.add(new Host("host" + i, "http://host" + i, cruise));
+
+		Map results = engine.poll(hosts);
+
+		assertEquals(hostCount, results.size());
+		assertAllSuccessful(results);
+		assertSame(virtual ? ExecutionMode.VIRTUAL : ExecutionMode.PLATFORM, engine.getExecutionMode());
+		assertEquals(virtual, isVirtual(cruise.pollThread));
+	}
+
+	public void testReportsHostsLateAtThePollDeadline() throws Exception {
+		engine.setDeadlines(300, 0, false);
+		Host slow = new Host("slow", "http://slow", new StubCruise(null, blocked, false));
+		Host fast = new Host("fast", "http://fast", answering());
+		List hosts = new ArrayList();
+		hosts.add(slow);
+		hosts.add(fast);
+
+		// the slow host is still being polled, so the engine did not wait for it
+		Map results = engine.poll(hosts);
+
+		PollResult slowResult = (PollResult) results.get(slow);
+		assertTrue(slowResult.isLate());
+		assertFalse(slowResult.isSuccessful());
+		assertNull(slowResult.getProjects());
+		assertNull(slowResult.getError());
+		assertTrue(((PollResult) results.get(fast)).isSuccessful());
+		assertEquals(1, engine.getActivePolls());
+	}
+
+	public void testReportsHostsLateAtTheHostDeadline() throws Exception {
+		engine.setDeadlines(0, 200, false);
+		Host slow = new Host("slow", "http://slow", new StubCruise(null, blocked, false));
+		final List polledHosts = new ArrayList();
+
+		Map results = engine.poll(Collections.singletonList(slow), new IPollListener() {
+			public void hostPolled(PollResult result) {
+				polledHosts.add(result);
+			}
+		});
+
+		assertTrue(((PollResult) results.get(slow)).isLate());
+		assertEquals(1, polledHosts.size());
+	}
+
+	public void testCancelsLatePolls() throws Exception {
+		engine.setDeadlines(200, 0, true);
+		Host slow = new Host("slow", "http://slow", new StubCruise(null, blocked, false));
+
+		Map results = engine.poll(Collections.singletonList(slow));
+
+		assertTrue(((PollResult) results.get(slow)).isLate());
+		awaitNoActivePolls();
+	}
+
+	public void testDoesNotPollHostsThatAreStillBeingPolled() throws Exception {
+		engine.setDeadlines(200, 0, false);
+		CountDownLatch release = new CountDownLatch(1);
+		Host slow = new Host("slow", "http://slow", new StubCruise(null, release, false));
+		engine.poll(Collections.singletonList(slow));
+
+		// without deadlines, waiting for the host would make it successful
+		engine.setDeadlines(0, 0, false);
+		Map results = engine.poll(Collections.singletonList(slow));
+
+		assertTrue(((PollResult) results.get(slow)).isLate());
+		assertEquals(1, engine.getActivePolls());
+
+		release.countDown();
+		awaitNoActivePolls();
+		assertTrue(((PollResult) engine.poll(Collections.singletonList(slow)).get(slow)).isSuccessful());
+	}
+
+	public void testPublishesLatePollsOnceTheyFinish() throws Exception {
+		engine.setDeadlines(0, 200, false);
+		CountDownLatch release = new CountDownLatch(1);
+		Host dead = new Host("dead", "http://dead", new StubCruise(null, release, true));
+		JCCTraySettings settings = new JCCTraySettings();
+		settings.set(ISettingsConstants.CIRCUIT_FAILURE_THRESHOLD, "1");
+		final CircuitBreaker circuitBreaker = new CircuitBreaker(settings, new Random(42));
+		IPollListener listener = new IPollListener() {
+			public void hostPolled(PollResult result) {
+				if (result.isLate())
+					circuitBreaker.recordLate(result.getHost(), System.currentTimeMillis());
+				else if (!result.isSuccessful())
+					circuitBreaker.recordFailure(result.getHost(), result.getError(), System.currentTimeMillis());
+			}
+		};
+
+		// the host hangs past its deadline
+		assertTrue(((PollResult) engine.poll(Collections.singletonList(dead), listener).get(dead)).isLate());
+		assertEquals(HostHealth.CLOSED, dead.getHealth().getState());
+		assertTrue(dead.getHealth().isLate());
+
+		// and then fails
+		release.countDown();
+		awaitNoActivePolls();
+		engine.publishLateResults(listener);
+
+		assertEquals(HostHealth.OPEN, dead.getHealth().getState());
+		assertEquals("could not connect to http://dead", dead.getHealth().getLastError().getMessage());
+	}
+
+	public void testDoesNotPublishCancelledPolls() throws Exception {
+		engine.setDeadlines(0, 200, true);
+		Host slow = new Host("slow", "http://slow", new StubCruise(null, blocked, false));
+		List polledHosts = new ArrayList();
+		IPollListener listener = countDownOn(slow, new CountDownLatch(1), polledHosts);
+
+		engine.poll(Collections.singletonList(slow), listener);
+		awaitNoActivePolls();
+		engine.publishLateResults(listener);
+
+		assertEquals(1, polledHosts.size());
+	}
+
+	public void testCancelsPollsWhenInterrupted() throws Exception {
+		final Host slow = new Host("slow", "http://slow", new StubCruise(null, blocked, false));
+		final List polledHosts = new ArrayList();
+		Thread.currentThread().interrupt();
+		try {
+			engine.poll(Collections.singletonList(slow), new IPollListener() {
+				public void hostPolled(PollResult result) {
+					polledHosts.add(result);
+				}
+			});
+			fail("the poll was not interrupted");
+		} catch (InterruptedException e) {
+			// expected
+		}
+		awaitNoActivePolls();
+		assertTrue(polledHosts.isEmpty());
+	}
+
+	private StubCruise answering() {
+		return new StubCruise(null, new CountDownLatch(0), false);
+	}
+
+	/**
+	 * @return a listener that records the hosts polled, and counts down the
+	 *         given latch once the given host was polled.
+	 */
+	private static IPollListener countDownOn(final Host host, final CountDownLatch latch, final List polledHosts) {
+		return new IPollListener() {
+			public void hostPolled(PollResult result) {
+				polledHosts.add(result.getHost());
+				if (result.getHost() == host)
+					latch.countDown();
+			}
+		};
+	}
+
+	private static void assertAllSuccessful(Map results) {
+		for (Iterator iterator = results.values().iterator(); iterator.hasNext();) {
+			PollResult result = (PollResult) iterator.next();
+			assertTrue(result.getHost() + " failed: " + result.getError(), result.isSuccessful());
+		}
+	}
+
+	/**
+	 * Waits for the polls that were cancelled or released to finish, they
+	 * finish on their own threads.
+	 */
+	private void awaitNoActivePolls() throws InterruptedException {
+		long giveUpTime = System.currentTimeMillis() + TIMEOUT;
+		while (engine.getActivePolls() > 0 && System.currentTimeMillis() < giveUpTime)
+			Thread.sleep(10);
+		assertEquals(0, engine.getActivePolls());
+	}
+
+	private static boolean isVirtual(Thread thread) throws Exception {
+		try {
+			return ((Boolean) Thread.class.getMethod("isVirtual", new Class[0]).invoke(thread, new Object[0]))
+					.booleanValue();
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+}
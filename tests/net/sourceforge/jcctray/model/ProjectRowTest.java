@@ -0,0 +1,107 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+import net.sourceforge.jcctray.utils.DateEngine;
+
+public class ProjectRowTest extends TestCase {
+
+	private int		formattedDates;
+	private Host	host;
+
+	public void testSnapshotKeepsItsRow() throws Exception {
+		DashBoardProject snapshot = project("Sleeping", "Success").snapshot();
+		assertSame(snapshot.getRow(), snapshot.getRow());
+		assertEquals(2, formattedDates);
+	}
+
+	public void testChangeableProjectGetsNewRow() throws Exception {
+		DashBoardProject project = project("Sleeping", "Success");
+		assertNotSame(project.getRow(), project.getRow());
+	}
+
+	public void testFormatsTexts() throws Exception {
+		ProjectRow row = project("Building", "Failure").getRow();
+		assertEquals("myProject", row.getName());
+		assertEquals("myHost", row.getHostText());
+		assertEquals("Building", row.getActivity());
+		assertEquals("Next build check at: [next]", row.getNextBuildText());
+		assertEquals("label", row.getLastBuildLabel());
+		assertEquals("[last]", row.getLastBuildText());
+	}
+
+	public void testShowsWaitingWithoutNextBuildTime() throws Exception {
+		DashBoardProject project = project("Sleeping", "Success");
+		project.setNextBuildTime(null);
+		project.setLastBuildTime("");
+		ProjectRow row = project.getRow();
+		assertEquals(ProjectRow.WAITING_FOR_BUILD, row.getNextBuildText());
+		assertEquals("", row.getLastBuildText());
+	}
+
+	public void testFormatsParsedTimesWithoutTheCruise() throws Exception {
+		host.setCruise(new CruiseControlJava() {
+			public String formatDate(String date, TimeZone timeZone) {
+				formattedDates++;
+				return "[" + date + "]";
+			}
+		});
+		DashBoardProject project = new DashBoardProject("myProject", "Sleeping", "Success", "label",
+				"2007-07-01T10:14:34", "2007-07-01T10:20:00", "", "", host);
+		ProjectRow row = project.getRow();
+		assertEquals(DateEngine.LOCAL.parse("2007-07-01T10:14:34"), project.getLastBuildMillis());
+		assertEquals("Next build check at: 10:20:00 AM, 01 Jul", row.getNextBuildText());
+		assertEquals("10:14:34 AM, 01 Jul", row.getLastBuildText());
+		assertEquals(0, formattedDates);
+	}
+
+	public void testComparesParsedTimesAsInstants() throws Exception {
+		Host ccnetHost = new Host("myHost", "http://myhost", new CCNet());
+		DashBoardProject project = new DashBoardProject("myProject", "Sleeping", "Success", "label",
+				"2007-06-22T11:30:28+05:30", "", "", "", ccnetHost);
+		DashBoardProject sameInstant = new DashBoardProject("myProject", "Sleeping", "Success", "label",
+				"2007-06-22T06:00:28Z", "", "", "", ccnetHost);
+		assertTrue(project.hasSameStatus(sameInstant));
+
+		sameInstant.setLastBuildTime("2007-06-22T06:00:29Z");
+		assertFalse(project.hasSameStatus(sameInstant));
+	}
+
+	public void testPicksIconFromStatusAndActivity() throws Exception {
+		assertSame(ProjectRow.GREEN, project("Sleeping", "Success").getRow().getIcon());
+		assertSame(ProjectRow.YELLOW, project("Building", "Success").getRow().getIcon());
+		assertSame(ProjectRow.RED, project("Sleeping", "Failure").getRow().getIcon());
+		assertSame(ProjectRow.ORANGE, project("Building", "Failure").getRow().getIcon());
+		assertSame(ProjectRow.YELLOW, project("Building", "Unknown").getRow().getIcon());
+		assertSame(ProjectRow.GRAY, project("Sleeping", "Exception").getRow().getIcon());
+	}
+
+	private DashBoardProject project(String activity, String lastBuildStatus) {
+		return new DashBoardProject("myProject", activity, lastBuildStatus, "label", "last", "next", "", "", host);
+	}
+
+	protected void setUp() throws Exception {
+		host = new Host("myHost", "http://myhost", new DefaultCruise() {
+			public String formatDate(String date, TimeZone timeZone) {
+				formattedDates++;
+				return "[" + date + "]";
+			}
+		});
+	}
+}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class ProjectsDeltaTest extends TestCase {
+
+	private Host	host;
+
+	protected void setUp() throws Exception {
+		host = new Host("host", "http://host");
+	}
+
+	public void testAddsEveryProjectOfTheFirstList() throws Exception {
+		ProjectsDelta delta = ProjectsDelta.compute(null, projects(new DashBoardProject[] { project("a", "Sleeping",
+				"Success", "1") }));
+
+		assertNull(delta.getOldProjects());
+		assertEquals(1, delta.getChanges().size());
+		ProjectChange change = (ProjectChange) delta.getChanges().get(0);
+		assertTrue(change.isAdded());
+		assertNull(change.getOldProject());
+		assertEquals("a", change.getProject().getName());
+	}
+
+	public void testIsEmptyWhenNothingChanged() throws Exception {
+		DashBoardProjects oldProjects = projects(new DashBoardProject[] { project("a", "Sleeping", "Success", "1") });
+		DashBoardProjects projects = projects(new DashBoardProject[] { project("a", "Sleeping", "Success", "1") });
+
+		assertTrue(ProjectsDelta.compute(oldProjects, projects).isEmpty());
+		assertTrue(ProjectsDelta.compute(projects, projects).isEmpty());
+	}
+
+	public void testFindsWhatChanged() throws Exception {
+		DashBoardProject oldB = project("b", "Sleeping", "Success", "1");
+		DashBoardProjects oldProjects = projects(new DashBoardProject[] { project("a", "Sleeping", "Success", "1"),
+				oldB, project("c", "Sleeping", "Success", "1"), project("d", "Sleeping", "Success", "1") });
+		DashBoardProject newB = project("b", "Building", "Success", "1");
+		DashBoardProjects projects = projects(new DashBoardProject[] { project("a", "Sleeping", "Success", "1"),
+				newB, project("c", "Sleeping", "Failure", "2"), project("e", "Sleeping", "Success", "1") });
+
+		ProjectsDelta delta = ProjectsDelta.compute(oldProjects, projects);
+		List changes = delta.getChanges();
+		assertEquals(4, changes.size());
+
+		ProjectChange b = (ProjectChange) changes.get(0);
+		assertEquals(ProjectChange.ACTIVITY, b.getKind());
+		assertSame(newB, b.getProject());
+		assertSame(oldB, b.getOldProject());
+
+		ProjectChange c = (ProjectChange) changes.get(1);
+		assertEquals("c", c.getProject().getName());
+		assertEquals(ProjectChange.STATUS | ProjectChange.LABEL, c.getKind());
+
+		ProjectChange e = (ProjectChange) changes.get(2);
+		assertEquals("e", e.getProject().getName());
+		assertTrue(e.isAdded());
+
+		ProjectChange d = (ProjectChange) changes.get(3);
+		assertEquals("d", d.getProject().getName());
+		assertTrue(d.isRemoved());
+
+		assertTrue(delta.hasChanges(ProjectChange.REMOVED));
+		assertTrue(delta.hasChanges(ProjectChange.LABEL | ProjectChange.ADDED));
+	}
+
+	public void testMatchesProjectsByHost() throws Exception {
+		DashBoardProjects oldProjects = projects(new DashBoardProject[] { project("a", "Sleeping", "Success", "1") });
+		DashBoardProject otherProject = project("a", "Sleeping", "Success", "1");
+		otherProject.setHost(new Host("other", "http://other"));
+		DashBoardProjects projects = projects(new DashBoardProject[] { otherProject });
+
+		ProjectsDelta delta = ProjectsDelta.compute(oldProjects, projects);
+		assertEquals(2, delta.getChanges().size());
+		assertTrue(((ProjectChange) delta.getChanges().get(0)).isAdded());
+		assertTrue(((ProjectChange) delta.getChanges().get(1)).isRemoved());
+		assertFalse(delta.hasChanges(ProjectChange.ACTIVITY | ProjectChange.STATUS | ProjectChange.LABEL));
+	}
+
+	private DashBoardProject project(String name, String activity, String lastBuildStatus, String lastBuildLabel) {
+		DashBoardProject project = new DashBoardProject(name, host);
+		project.setActivity(activity);
+		project.setLastBuildStatus(lastBuildStatus);
+		project.setLastBuildLabel(lastBuildLabel);
+		return project;
+	}
+
+	private DashBoardProjects projects(DashBoardProject[] projectList) {
+		DashBoardProjects projects = new DashBoardProjects();
+		for (int i = 0; i < projectList.length; i++)
+			projects.add(projectList[i]);
+		return projects;
+	}
+}
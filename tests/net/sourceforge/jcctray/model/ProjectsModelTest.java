@@ -0,0 +1,181 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class ProjectsModelTest extends TestCase {
+
+	private static class RecordingListener implements IProjectsListener {
+		private final List	deltas	= new ArrayList();
+
+		public void projectsChanged(ProjectsDelta delta) {
+			deltas.add(delta);
+		}
+	}
+
+	private ProjectsModel		model;
+	private RecordingListener	listener;
+
+	protected void setUp() throws Exception {
+		model = new ProjectsModel();
+		listener = new RecordingListener();
+		model.addListener(listener);
+	}
+
+	public void testNotifiesListenersOfChanges() throws Exception {
+		model.update(projects("Sleeping"));
+		DashBoardProjects first = model.getProjects();
+		model.update(projects("Building"));
+
+		assertEquals(2, listener.deltas.size());
+		ProjectsDelta delta = (ProjectsDelta) listener.deltas.get(1);
+		assertSame(first, delta.getOldProjects());
+		assertSame(model.getProjects(), delta.getProjects());
+		assertEquals("Building", model.getProjects().getProject(0).getActivity());
+		assertTrue(delta.hasChanges(ProjectChange.ACTIVITY));
+	}
+
+	public void testDoesNotNotifyListenersWhenNothingChanged() throws Exception {
+		model.update(projects("Sleeping"));
+		ProjectsSnapshot first = model.getSnapshot();
+		assertTrue(model.update(projects("Sleeping")).isEmpty());
+
+		assertEquals(1, listener.deltas.size());
+		assertSame(first, model.getSnapshot());
+	}
+
+	public void testNumbersSnapshots() throws Exception {
+		assertNull(model.getSnapshot());
+		model.update(projects("Sleeping"));
+		assertEquals(1, model.getSnapshot().getVersion());
+		model.update(projects("Building"));
+		assertEquals(2, model.getSnapshot().getVersion());
+	}
+
+	public void testPublishesProjectsThatCannotBeChanged() throws Exception {
+		DashBoardProjects projects = projects("Sleeping");
+		model.update(projects);
+		projects.getProject(0).setActivity("Building");
+
+		DashBoardProject snapshot = model.getProjects().getProject(0);
+		assertEquals("Sleeping", snapshot.getActivity());
+		assertTrue(model.getProjects().isFrozen());
+		try {
+			snapshot.setActivity("Building");
+			fail("snapshot projects should not be changed");
+		} catch (UnsupportedOperationException expected) {
+		}
+		try {
+			model.getProjects().add(new DashBoardProject("other"));
+			fail("snapshots should not be changed");
+		} catch (UnsupportedOperationException expected) {
+		}
+	}
+
+	public void testSharesUnchangedProjectsWithThePreviousSnapshot() throws Exception {
+		Host host = new Host("host", "http://host");
+		DashBoardProjects projects = new DashBoardProjects();
+		projects.add(project("a", host, "Sleeping"));
+		projects.add(project("b", host, "Sleeping"));
+		model.update(projects);
+		DashBoardProjects first = model.getProjects();
+
+		projects = new DashBoardProjects();
+		projects.add(project("a", host, "Sleeping"));
+		projects.add(project("b", host, "Building"));
+		model.update(projects);
+		DashBoardProjects second = model.getProjects();
+
+		assertSame(first.getProject(0), second.getProject(0));
+		assertNotSame(first.getProject(1), second.getProject(1));
+		assertEquals("Building", second.getProject(1).getActivity());
+	}
+
+	public void testReportsOtherChangesAsDetails() throws Exception {
+		DashBoardProjects projects = projects("Sleeping");
+		model.update(projects);
+		projects = projects("Sleeping");
+		projects.getProject(0).setNextBuildTime("tomorrow");
+
+		ProjectsDelta delta = model.update(projects);
+		assertEquals(1, delta.getChanges().size());
+		assertEquals(ProjectChange.DETAILS, ((ProjectChange) delta.getChanges().get(0)).getKind());
+		assertEquals("tomorrow", model.getProjects().getProject(0).getNextBuildTime());
+	}
+
+	public void testReplacesTheProjectsOfOneHost() throws Exception {
+		Host first = new Host("first", "http://first");
+		Host second = new Host("second", "http://second");
+		DashBoardProjects projects = new DashBoardProjects();
+		projects.add(project("a", first, "Sleeping"));
+		projects.add(project("b", second, "Sleeping"));
+		projects.add(project("c", first, "Sleeping"));
+		model.update(projects);
+		DashBoardProjects previous = model.getProjects();
+
+		DashBoardProjects firstProjects = new DashBoardProjects();
+		firstProjects.add(project("a", first, "Building"));
+		firstProjects.add(project("d", first, "Sleeping"));
+		ProjectsDelta delta = model.update("first", firstProjects);
+
+		DashBoardProjects current = model.getProjects();
+		assertEquals(3, current.count());
+		assertEquals("a", current.getProject(0).getName());
+		assertEquals("Building", current.getProject(0).getActivity());
+		assertEquals("d", current.getProject(1).getName());
+		assertSame(previous.getProject(1), current.getProject(2));
+		assertEquals(3, delta.getChanges().size());
+		assertTrue(delta.hasChanges(ProjectChange.ACTIVITY | ProjectChange.ADDED | ProjectChange.REMOVED));
+
+		assertTrue(model.update("first", firstProjects).isEmpty());
+	}
+
+	public void testStopsNotifyingRemovedListeners() throws Exception {
+		model.removeListener(listener);
+		model.update(projects("Sleeping"));
+
+		assertTrue(listener.deltas.isEmpty());
+	}
+
+	public void testNotifiesOtherListenersWhenOneFails() throws Exception {
+		ProjectsModel model = new ProjectsModel();
+		model.addListener(new IProjectsListener() {
+			public void projectsChanged(ProjectsDelta delta) {
+				throw new IllegalStateException("failing listener");
+			}
+		});
+		model.addListener(listener);
+		model.update(projects("Sleeping"));
+
+		assertEquals(1, listener.deltas.size());
+	}
+
+	private DashBoardProjects projects(String activity) {
+		DashBoardProjects projects = new DashBoardProjects();
+		projects.add(project("project", new Host("host", "http://host"), activity));
+		return projects;
+	}
+
+	private DashBoardProject project(String name, Host host, String activity) {
+		DashBoardProject project = new DashBoardProject(name, host);
+		project.setActivity(activity);
+		return project;
+	}
+}
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.httpclient.HttpClient;
+
+public class RequestCoalescerTest extends TestCase {
+
+	private static final String	REPORT	= "<Projects><Project name=\"p1\" activity=\"Sleeping\" />"
+												+ "<Project name=\"p2\" activity=\"Building\" /></Projects>";
+
+	private StubStatusServer	server;
+	private HttpClient			client;
+	private RequestCoalescer	coalescer;
+	private String				url;
+	private Host				first;
+	private Host				second;
+
+	protected void setUp() throws Exception {
+		server = new StubStatusServer();
+		server.setBody(REPORT);
+		client = new HttpClient();
+		coalescer = new RequestCoalescer(new StatusReportCache(null));
+		url = server.getUrl("/go/cctray.xml");
+		first = new Host("first", server.getUrl(""), new Go());
+		first.addConfiguredProject(new DashBoardProject("p1"));
+		second = new Host("second", server.getUrl(""), new Go());
+		second.addConfiguredProject(new DashBoardProject("p2"));
+	}
+
+	protected void tearDown() throws Exception {
+		server.stop();
+	}
+
+	public void testSharesReportWithinCycle() throws Exception {
+		coalescer.startCycle(Arrays.asList(new Host[] { first, second }));
+		DashBoardProjects firstProjects = coalescer.getProjects(url, client, first, names("p1"));
+		DashBoardProjects secondProjects = coalescer.getProjects(url, client, second, names("p2"));
+		coalescer.endCycle();
+
+		assertEquals(1, server.getRequests().size());
+		assertEquals(1, firstProjects.count());
+		assertEquals("p1", firstProjects.getProject(0).getName());
+		assertSame(first, firstProjects.getProject(0).getHost());
+		assertEquals(1, secondProjects.count());
+		assertEquals("p2", secondProjects.getProject(0).getName());
+		assertSame(second, secondProjects.getProject(0).getHost());
+	}
+
+	public void testFetchesAgainInNextCycle() throws Exception {
+		coalescer.startCycle(Arrays.asList(new Host[] { first, second }));
+		coalescer.getProjects(url, client, first, null);
+		coalescer.endCycle();
+		coalescer.startCycle(Arrays.asList(new Host[] { first, second }));
+		coalescer.getProjects(url, client, first, null);
+		coalescer.endCycle();
+
+		assertEquals(2, server.getRequests().size());
+	}
+
+	public void testSharesRequestInFlight() throws Exception {
+		server.hold();
+		final DashBoardProjects[] firstProjects = new DashBoardProjects[1];
+		Thread thread = new Thread() {
+			public void run() {
+				try {
+					firstProjects[0] = coalescer.getProjects(url, client, first, null);
+				} catch (Exception e) {
+					// the assertion below fails
+				}
+			}
+		};
+		thread.start();
+		server.awaitRequest();
+		releaseWhenWaiting(Thread.currentThread());
+		DashBoardProjects secondProjects = coalescer.getProjects(url, client, second, null);
+		thread.join();
+
+		assertEquals(1, server.getRequests().size());
+		assertEquals(2, firstProjects[0].count());
+		assertSame(first, firstProjects[0].getProject(0).getHost());
+		assertEquals(2, secondProjects.count());
+		assertSame(second, secondProjects.getProject(0).getHost());
+	}
+
+	public void testDoesNotShareAcrossCredentials() throws Exception {
+		Host other = new Host("other", server.getUrl(""), new Go(), "user", "secret");
+		coalescer.startCycle(Arrays.asList(new Host[] { first, second }));
+		coalescer.getProjects(url, client, first, null);
+		coalescer.getProjects(url, client, other, null);
+		coalescer.endCycle();
+
+		assertEquals(2, server.getRequests().size());
+	}
+
+	public void testCachesReportsApartAcrossCredentials() throws Exception {
+		server.setETag("\"v1\"");
+		Host other = new Host("other", server.getUrl(""), new Go(), "user", "secret");
+		DashBoardProjects firstProjects = coalescer.getProjects(url, client, first, null);
+		coalescer.getProjects(url, client, other, null);
+		assertNull(server.getLastRequest().getFirst("If-None-Match"));
+
+		assertSame(firstProjects, coalescer.getProjects(url, client, first, null));
+		assertEquals("\"v1\"", server.getLastRequest().getFirst("If-None-Match"));
+	}
+
+	public void testForgetsCopiesForRemovedHosts() throws Exception {
+		coalescer.startCycle(Arrays.asList(new Host[] { first, second }));
+		coalescer.getProjects(url, client, first, names("p1"));
+		DashBoardProjects secondProjects = coalescer.getProjects(url, client, second, names("p2"));
+		coalescer.endCycle();
+
+		coalescer.retainHosts(Arrays.asList(new String[] { "first" }));
+		assertNotSame(secondProjects, coalescer.getProjects(url, client, second, names("p2")));
+	}
+
+	public void testReturnsSameProjectsWhileReportIsUnchanged() throws Exception {
+		coalescer.startCycle(Arrays.asList(new Host[] { first, second }));
+		DashBoardProjects firstProjects = coalescer.getProjects(url, client, first, names("p1"));
+		DashBoardProjects secondProjects = coalescer.getProjects(url, client, second, names("p2"));
+		coalescer.endCycle();
+		coalescer.startCycle(Arrays.asList(new Host[] { first, second }));
+		assertSame(firstProjects, coalescer.getProjects(url, client, first, names("p1")));
+		assertSame(secondProjects, coalescer.getProjects(url, client, second, names("p2")));
+		coalescer.endCycle();
+	}
+
+	/**
+	 * Answers the request once the given thread waits for it, which it only
+	 * does when it shares the request in flight. A thread that makes a
+	 * request of its own never waits, the request is then answered after a
+	 * while so that the test fails rather than hangs.
+	 */
+	private void releaseWhenWaiting(final Thread waitingThread) {
+		final long giveUpTime = System.currentTimeMillis() + 10000;
+		new Thread() {
+			public void run() {
+				while (waitingThread.getState() != Thread.State.WAITING && System.currentTimeMillis() < giveUpTime)
+					Thread.yield();
+				server.release();
+			}
+		}.start();
+	}
+
+	private static Set names(String name) {
+		return new HashSet(Arrays.asList(new String[] { name }));
+	}
+}
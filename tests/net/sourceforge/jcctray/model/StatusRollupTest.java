@@ -0,0 +1,94 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import junit.framework.TestCase;
+
+public class StatusRollupTest extends TestCase {
+
+	private Host			host;
+	private Host			otherHost;
+	private StatusRollup	rollup;
+
+	protected void setUp() throws Exception {
+		host = new Host("host", "http://host");
+		otherHost = new Host("otherHost", "http://otherHost");
+		rollup = new StatusRollup();
+	}
+
+	public void testCountsProjectsOfFirstList() throws Exception {
+		DashBoardProjects projects = projects(new DashBoardProject[] { project("a", "Sleeping", "Success", "web", host),
+				project("b", "Building", "Failure", "web", host), project("c", "Building", "Success", "db", otherHost),
+				project("d", "Sleeping", "Failure", "db", otherHost) });
+		rollup.apply(ProjectsDelta.compute(null, projects));
+
+		assertEquals("2 failing, 2 building of 4", rollup.getOverall().getSummary());
+		assertSame(ProjectRow.ORANGE, rollup.getOverall().getIcon());
+		assertEquals(1, rollup.getHost("otherHost").getFailing());
+		assertEquals(2, rollup.getCategory("web").getTotal());
+		assertSame(ProjectRow.YELLOW, rollup.getCategory("db").getIcon());
+	}
+
+	public void testUpdatesCountsFromChanges() throws Exception {
+		DashBoardProjects oldProjects = projects(new DashBoardProject[] {
+				project("a", "Sleeping", "Success", "web", host), project("b", "Building", "Failure", "web", host) });
+		rollup.apply(ProjectsDelta.compute(null, oldProjects));
+
+		DashBoardProjects projects = projects(new DashBoardProject[] { project("a", "Sleeping", "Failure", "db", host),
+				project("c", "Sleeping", "Success", "web", otherHost) });
+		rollup.apply(ProjectsDelta.compute(oldProjects, projects));
+
+		assertEquals("1 failing, 0 building of 2", rollup.getOverall().getSummary());
+		assertSame(ProjectRow.RED, rollup.getOverall().getIcon());
+		assertEquals(1, rollup.getCategory("db").getFailing());
+		assertEquals(1, rollup.getCategory("web").getTotal());
+		assertEquals(1, rollup.getHost("host").getTotal());
+	}
+
+	public void testGreenWhenNothingFailsOrBuilds() throws Exception {
+		rollup.apply(ProjectsDelta.compute(null, projects(new DashBoardProject[] {
+				project("a", "Sleeping", "Success", "", host), project("b", "Sleeping", "Unknown", "", host) })));
+		assertSame(ProjectRow.GREEN, rollup.getOverall().getIcon());
+		assertEquals(0, rollup.getHost("unknown").getTotal());
+	}
+
+	public void testOnlyCountsSelectedProjects() throws Exception {
+		final DashBoardProject skipped = project("b", "Building", "Failure", "", host);
+		rollup = new StatusRollup() {
+			protected boolean isCounted(DashBoardProject project) {
+				return !project.equals(skipped);
+			}
+		};
+		DashBoardProjects projects = projects(new DashBoardProject[] { project("a", "Sleeping", "Success", "", host),
+				skipped });
+		rollup.reset(projects);
+		assertEquals("0 failing, 0 building of 1", rollup.getOverall().getSummary());
+
+		rollup.apply(ProjectsDelta.compute(projects, new DashBoardProjects()));
+		assertEquals(0, rollup.getOverall().getTotal());
+	}
+
+	private DashBoardProject project(String name, String activity, String lastBuildStatus, String category, Host host) {
+		return new DashBoardProject(name, activity, lastBuildStatus, "1", "", "", "", category, host).snapshot();
+	}
+
+	private DashBoardProjects projects(DashBoardProject[] projects) {
+		DashBoardProjects dashBoardProjects = new DashBoardProjects();
+		for (int i = 0; i < projects.length; i++)
+			dashBoardProjects.add(projects[i]);
+		return dashBoardProjects;
+	}
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A tiny HTTP server that serves a status report, used to test the fetch
+ * path without a real CI server.
+ */
+public class StubStatusServer implements HttpHandler {
+
+	private final HttpServer		server;
+	private final List				requests		= new ArrayList();
+	private final Map				responseHeaders	= new HashMap();
+	private final CountDownLatch	received		= new CountDownLatch(1);
+	private byte[]					body			= new byte[0];
+	private String					etag;
+	private CountDownLatch			release			= new CountDownLatch(0);
+
+	public StubStatusServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", this);
+		server.start();
+	}
+
+	public String getUrl(String path) {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+	}
+
+	public synchronized void setBody(String body) {
+		this.body = body.getBytes();
+	}
+
+	public synchronized void setBody(byte[] body) {
+		this.body = body;
+	}
+
+	/**
+	 * Answers requests that carry a matching <code>If-None-Match</code>
+	 * header with a 304.
+	 */
+	public synchronized void setETag(String etag) {
+		this.etag = etag;
+	}
+
+	/**
+	 * Holds the answers to all the requests until {@link #release()} is
+	 * called, to simulate a slow server.
+	 */
+	public synchronized void hold() {
+		release = new CountDownLatch(1);
+	}
+
+	public synchronized void release() {
+		release.countDown();
+	}
+
+	/**
+	 * Waits until the first request is received.
+	 */
+	public void awaitRequest() throws InterruptedException {
+		received.await();
+	}
+
+	public synchronized void setResponseHeader(String name, String value) {
+		responseHeaders.put(name, value);
+	}
+
+	/**
+	 * @return the headers of all the requests received so far.
+	 */
+	public synchronized List getRequests() {
+		return new ArrayList(requests);
+	}
+
+	public synchronized Headers getLastRequest() {
+		return (Headers) requests.get(requests.size() - 1);
+	}
+
+	public void handle(HttpExchange exchange) throws IOException {
+		CountDownLatch release;
+		synchronized (this) {
+			requests.add(exchange.getRequestHeaders());
+			received.countDown();
+			release = this.release;
+		}
+		try {
+			release.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		respond(exchange);
+	}
+
+	private synchronized void respond(HttpExchange exchange) throws IOException {
+		for (Iterator iterator = responseHeaders.entrySet().iterator(); iterator.hasNext();) {
+			Map.Entry entry = (Map.Entry) iterator.next();
+			exchange.getResponseHeaders().set((String) entry.getKey(), (String) entry.getValue());
+		}
+		if (etag != null) {
+			exchange.getResponseHeaders().set("ETag", etag);
+			if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				exchange.sendResponseHeaders(304, -1);
+				exchange.close();
+				return;
+			}
+		}
+		exchange.sendResponseHeaders(200, body.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(body);
+		out.close();
+	}
+
+	public void stop() {
+		release();
+		server.stop(0);
+	}
+}
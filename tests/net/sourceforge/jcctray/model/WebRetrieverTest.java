@@ -16,6 +16,9 @@
 package net.sourceforge.jcctray.model;
 
 import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 import junit.framework.TestCase;
 
@@ -50,4 +53,85 @@ public class WebRetrieverTest extends TestCase {
 		assertEquals(project.getNextBuildTime(), "2007-05-10T06:29:26.5109320-04:00");
 		assertEquals(project.getWebUrl(), "http://renogold/ccnet/server/local/project/Brighton/ViewProjectReport.aspx");
 	}
+
+	public void testSharesKnownActivitiesAndStatuses() throws Exception {
+		String projectXml = "<Projects><Project name=\"p1\" activity=\"Building\" lastBuildStatus=\"Failure\" />"
+				+ "<Project name=\"p2\" activity=\"Paused\" lastBuildStatus=\"Cancelled\" />"
+				+ "<Project name=\"p3\" activity=\"Paused\" lastBuildStatus=\"Cancelled\" /></Projects>";
+		DashBoardProjects projects = DashboardXmlParser.getProjects(new StringReader(projectXml));
+
+		assertSame(ProjectActivity.BUILDING, projects.getProject(0).getProjectActivity());
+		assertSame(BuildStatus.FAILURE, projects.getProject(0).getBuildStatus());
+		assertTrue(projects.getProject(0).isActive());
+		assertTrue(projects.getProject(0).getProjectActivity().isDefined());
+		assertFalse(projects.getProject(1).getProjectActivity().isDefined());
+		assertFalse(projects.getProject(1).getBuildStatus().isDefined());
+		assertEquals(projects.getProject(1).getProjectActivity(), projects.getProject(2).getProjectActivity());
+		assertEquals(projects.getProject(1).getBuildStatus(), projects.getProject(2).getBuildStatus());
+		assertEquals("Paused", projects.getProject(1).getActivity());
+		assertEquals("Cancelled", projects.getProject(1).getLastBuildStatus());
+	}
+
+	public void testStaxParserMatchesDigesterParser() throws Exception {
+		String projectXml = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+				+ "<Projects>"
+				+ "<Project name=\"p1\" activity=\"Sleeping\" lastBuildStatus=\"Success\" unknown=\"x\" />"
+				+ "<Project name=\"p2\" category=\"c&amp;d\" activity=\"Building\" enabled=\"yes\">"
+				+ "<messages><Project name=\"nested\" /></messages></Project>"
+				+ "<Project name=\"p1\" activity=\"CheckingModifications\" lastBuildLabel=\"2\" />"
+				+ "<Other name=\"p3\" />"
+				+ "</Projects>";
+
+		DashBoardProjects stax = DashboardXmlParser.getProjects(new StringReader(projectXml),
+				DashboardXmlParser.STAX, null);
+		DashBoardProjects digester = DashboardXmlParser.getProjects(new StringReader(projectXml),
+				DashboardXmlParser.DIGESTER, null);
+
+		assertEquals(2, stax.count());
+		assertEquals("p2", stax.getProject(0).getName());
+		assertEquals("CheckingModifications", stax.getProject(1).getActivity());
+		assertSameProjects(digester, stax);
+	}
+
+	public void testStaxParserIgnoresOtherRootElements() throws Exception {
+		String projectXml = "<Servers><Project name=\"p1\" /></Servers>";
+		assertEquals(0, DashboardXmlParser.getProjects(new StringReader(projectXml), DashboardXmlParser.STAX, null)
+				.count());
+		assertEquals(0, DashboardXmlParser.getProjects(new StringReader(projectXml), DashboardXmlParser.DIGESTER, null)
+				.count());
+	}
+
+	public void testReadsOnlyTheProjectsAskedFor() throws Exception {
+		String projectXml = "<Projects><Project name=\"p1\" activity=\"Sleeping\" />"
+				+ "<Project name=\"p2\" activity=\"Building\" /><Project activity=\"Sleeping\" />"
+				+ "<Project name=\"p3\" activity=\"Sleeping\" /></Projects>";
+		Set projectNames = new HashSet(Arrays.asList(new String[] { "p3", "p2", "p4" }));
+
+		DashBoardProjects stax = DashboardXmlParser.getProjects(new StringReader(projectXml),
+				DashboardXmlParser.STAX, projectNames);
+		DashBoardProjects digester = DashboardXmlParser.getProjects(new StringReader(projectXml),
+				DashboardXmlParser.DIGESTER, projectNames);
+
+		assertEquals(2, stax.count());
+		assertEquals("p2", stax.getProject(0).getName());
+		assertEquals("p3", stax.getProject(1).getName());
+		assertSameProjects(digester, stax);
+	}
+
+	private void assertSameProjects(DashBoardProjects expected, DashBoardProjects actual) {
+		assertEquals(expected.count(), actual.count());
+		for (int i = 0; i < expected.count(); i++) {
+			DashBoardProject expectedProject = expected.getProject(i);
+			DashBoardProject actualProject = actual.getProject(i);
+			assertEquals(expectedProject.getName(), actualProject.getName());
+			assertEquals(expectedProject.getCategory(), actualProject.getCategory());
+			assertEquals(expectedProject.getActivity(), actualProject.getActivity());
+			assertEquals(expectedProject.getLastBuildStatus(), actualProject.getLastBuildStatus());
+			assertEquals(expectedProject.getLastBuildLabel(), actualProject.getLastBuildLabel());
+			assertEquals(expectedProject.getLastBuildTime(), actualProject.getLastBuildTime());
+			assertEquals(expectedProject.getNextBuildTime(), actualProject.getNextBuildTime());
+			assertEquals(expectedProject.getWebUrl(), actualProject.getWebUrl());
+			assertEquals(expectedProject.isEnabled(), actualProject.isEnabled());
+		}
+	}
 }
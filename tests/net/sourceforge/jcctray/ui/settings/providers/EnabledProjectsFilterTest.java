@@ -15,7 +15,10 @@
  ******************************************************************************/
 package net.sourceforge.jcctray.ui.settings.providers;
 
+import java.util.Collections;
+
 import net.sourceforge.jcctray.model.DashBoardProject;
+import net.sourceforge.jcctray.model.EnabledProjects;
 import net.sourceforge.jcctray.model.Host;
 import net.sourceforge.jcctray.model.IJCCTraySettings;
 
@@ -41,14 +44,14 @@ public class EnabledProjectsFilterTest extends MockObjectTestCase {
 	public void testDoesNotFiltersEnabledProjectInSettings() throws Exception {
 		Mock traySettingsMock = mock(IJCCTraySettings.class);
 		project.setEnabled(true);
-		traySettingsMock.expects(once()).method("findHostByString").with(same(host.getHostString())).will(returnValue(host));
+		traySettingsMock.expects(once()).method("getEnabledProjects").will(returnValue(enabledProjects()));
 		EnabledProjectsFilter filter = new EnabledProjectsFilter((IJCCTraySettings) traySettingsMock.proxy());
 		assertTrue(filter.select(null, null, project));
 	}
 	
 	public void testFiltersDisabledProjectInSettings() throws Exception {
 		project.setEnabled(false);
-		traySettingsMock.expects(once()).method("findHostByString").with(same(host.getHostString())).will(returnValue(host));
+		traySettingsMock.expects(once()).method("getEnabledProjects").will(returnValue(enabledProjects()));
 		EnabledProjectsFilter filter = new EnabledProjectsFilter((IJCCTraySettings) traySettingsMock.proxy());
 		assertFalse(filter.select(null, null, project));
 	}
@@ -56,7 +59,7 @@ public class EnabledProjectsFilterTest extends MockObjectTestCase {
 	
 	public void testFiltersProjectNotInSettings() throws Exception {
 		host.removeConfiguredProject(project);
-		traySettingsMock.expects(once()).method("findHostByString").with(same(host.getHostString())).will(returnValue(host));
+		traySettingsMock.expects(once()).method("getEnabledProjects").will(returnValue(enabledProjects()));
 		EnabledProjectsFilter filter = new EnabledProjectsFilter((IJCCTraySettings) traySettingsMock.proxy());
 		assertFalse(filter.select(null, null, project));
 	}
@@ -66,6 +69,17 @@ public class EnabledProjectsFilterTest extends MockObjectTestCase {
 		assertFalse(filter.select(null, null, "SomeObject"));
 	}
 	
+	public void testFiltersProjectOfRemovedHost() throws Exception {
+		project.setEnabled(true);
+		traySettingsMock.expects(once()).method("getEnabledProjects").will(returnValue(EnabledProjects.NONE));
+		EnabledProjectsFilter filter = new EnabledProjectsFilter((IJCCTraySettings) traySettingsMock.proxy());
+		assertFalse(filter.select(null, null, project));
+	}
+
+	private EnabledProjects enabledProjects() {
+		return EnabledProjects.of(1, Collections.singleton(host));
+	}
+
 	protected void tearDown() throws Exception {
 		traySettingsMock.verify();
 	}
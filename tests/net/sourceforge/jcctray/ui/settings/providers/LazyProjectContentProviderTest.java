@@ -0,0 +1,90 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.ui.settings.providers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import net.sourceforge.jcctray.model.DashBoardProject;
+import net.sourceforge.jcctray.model.DashBoardProjects;
+
+public class LazyProjectContentProviderTest extends TestCase {
+
+	/** Records what the provider hands to the viewer, without a table. */
+	private static class RecordingProvider extends LazyProjectContentProvider {
+		private int			itemCount	= -1;
+		private final List	replaced	= new ArrayList();
+
+		private RecordingProvider() {
+			super(null);
+		}
+
+		protected void replace(Object project, int index) {
+			replaced.add(index + ":" + project);
+		}
+
+		protected void setItemCount(int count) {
+			itemCount = count;
+		}
+	}
+
+	private RecordingProvider	provider;
+
+	protected void setUp() throws Exception {
+		provider = new RecordingProvider();
+	}
+
+	public void testSetsItemCountFromInput() throws Exception {
+		provider.inputChanged(null, null, projects(new String[] { "a", "b", "c" }));
+		assertEquals(3, provider.itemCount);
+	}
+
+	public void testReplacesTheProjectAtTheIndex() throws Exception {
+		provider.inputChanged(null, null, projects(new String[] { "a", "b", "c" }));
+		provider.updateElement(1);
+		provider.updateElement(3);
+		assertEquals(1, provider.replaced.size());
+		assertEquals("1:b", provider.replaced.get(0));
+	}
+
+	public void testFollowsTheInputAfterProjectsWereRemoved() throws Exception {
+		provider.inputChanged(null, null, projects(new String[] { "a", "b", "c" }));
+		provider.inputChanged(null, null, projects(new String[] { "a", "c" }));
+		assertEquals(2, provider.itemCount);
+
+		provider.updateElement(1);
+		provider.updateElement(2);
+		assertEquals(1, provider.replaced.size());
+		assertEquals("1:c", provider.replaced.get(0));
+	}
+
+	public void testShowsNothingForOtherInput() throws Exception {
+		provider.inputChanged(null, null, projects(new String[] { "a" }));
+		provider.inputChanged(null, null, "asdf");
+		assertEquals(0, provider.itemCount);
+
+		provider.updateElement(0);
+		assertTrue(provider.replaced.isEmpty());
+	}
+
+	private static DashBoardProjects projects(String[] names) {
+		DashBoardProjects projects = new DashBoardProjects();
+		for (int i = 0; i < names.length; i++)
+			projects.add(new DashBoardProject(names[i]));
+		return projects;
+	}
+}
@@ -87,6 +87,13 @@ public class ProjectLabelProviderTest extends TestCase {
 		assertEquals("MyHost", labelProvider.getColumnText(project, 1));
 	}
 
+	public void testFlagsOfflineHostOnFirstColumn() throws Exception {
+		Host host = new Host("MyHost", null);
+		host.getHealth().recordFailure(new Exception(), true, 1000);
+		project.setHost(host);
+		assertEquals("MyHost (offline)", labelProvider.getColumnText(project, 1));
+	}
+
 	public void testGetsActivityOnSecondColumn() throws Exception {
 		project.setActivity(IProjectLabelConstants.BUILDING);
 		assertEquals(IProjectLabelConstants.BUILDING, labelProvider.getColumnText(project, 2));
@@ -0,0 +1,59 @@
+/*******************************************************************************
+ *  Copyright 2007 Ketan Padegaonkar http://ketan.padegaonkar.name
+ *  
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ ******************************************************************************/
+package net.sourceforge.jcctray.utils;
+
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+
+public class DateEngineTest extends TestCase {
+
+	private static final TimeZone	UTC	= TimeZone.getTimeZone("UTC");
+
+	public void testParsesOffsetsInAllForms() throws Exception {
+		long instant = DateEngine.ZONED.parse("2007-06-22T06:00:28Z");
+		assertEquals(instant, DateEngine.ZONED.parse("2007-06-22T11:30:28+05:30"));
+		assertEquals(instant, DateEngine.ZONED.parse("2007-06-22T11:30:28.82815+05:30"));
+		assertEquals(instant, DateEngine.ZONED.parse("2007-06-22T11:30:28+0530"));
+		assertEquals(instant, DateEngine.ZONED.parse("2007-06-22T01:00:28-05:00"));
+		assertEquals("6:00:28 AM, 22 Jun", DateEngine.format(instant, UTC));
+	}
+
+	public void testZonedEngineNeedsAnOffset() throws Exception {
+		assertEquals(DateEngine.UNPARSEABLE, DateEngine.ZONED.parse("2007-06-22T11:30:28"));
+		assertEquals(DateEngine.UNPARSEABLE, DateEngine.ZONED.parse("2007-06-22T11:30:28+5"));
+	}
+
+	public void testLocalEngineIgnoresOffsets() throws Exception {
+		long instant = DateEngine.LOCAL.parse("2007-07-01T10:14:34");
+		assertEquals(instant, DateEngine.LOCAL.parse("2007-07-01T10:14:34.123+05:30"));
+		assertEquals("10:14:34 AM, 01 Jul", DateEngine.format(instant, null));
+	}
+
+	public void testRejectsGarbage() throws Exception {
+		assertEquals(DateEngine.UNPARSEABLE, DateEngine.LOCAL.parse(null));
+		assertEquals(DateEngine.UNPARSEABLE, DateEngine.LOCAL.parse(""));
+		assertEquals(DateEngine.UNPARSEABLE, DateEngine.LOCAL.parse("xyz"));
+		assertEquals(DateEngine.UNPARSEABLE, DateEngine.LOCAL.parse("2007-07-01 10:14:34"));
+		assertNull(DateEngine.ZONED.format("xyz", UTC));
+	}
+
+	public void testFormatsInTheGivenTimeZone() throws Exception {
+		String timestamp = "2007-01-22T11:30:28+05:30";
+		assertEquals("11:30:28 AM, 22 Jan", DateEngine.ZONED.format(timestamp, TimeZone.getTimeZone("Asia/Calcutta")));
+		assertEquals("1:00:28 AM, 22 Jan", DateEngine.ZONED.format(timestamp, TimeZone.getTimeZone("America/New_York")));
+	}
+}